@@ -0,0 +1,19 @@
+-- One-off migration of the CDC source table, run once by its owner before the first start of this version:
+--   psql "$DATABASE_URL" -f db/contributions-period.sql
+-- Not run by the application, which only reads public.contributions: adding the column rewrites the table under
+-- an ACCESS EXCLUSIVE lock, so schedule it when writes to the table can wait.
+--
+-- Contribution period as months since year 0, the value of UtilService.toPeriod, so that history lookups
+-- filter and sort on an indexed column instead of computing dates from year and month.
+-- Adding a stored generated column rewrites the table once, which backfills existing rows;
+-- later inserts and updates keep it in step with year and month.
+alter table public.contributions
+    add column if not exists period integer generated always as (year * 12 + case upper(month)
+        when 'JAN' then 0 when 'FEB' then 1 when 'MAR' then 2 when 'APR' then 3
+        when 'MAY' then 4 when 'JUN' then 5 when 'JUL' then 6 when 'AUG' then 7
+        when 'SEP' then 8 when 'OCT' then 9 when 'NOV' then 10 when 'DEC' then 11
+        end) stored;
+
+-- Serves the history of a member, sponsor and type newest first; the included columns allow index-only scans.
+create index concurrently if not exists contributions_member_period_idx
+    on public.contributions (member_id, sponsor_id, type, period desc) include (ee, er, tot, year, month);
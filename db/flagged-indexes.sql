@@ -0,0 +1,36 @@
+-- One-off migration for the REST API over the flagged rows, run once after the first start of this version has
+-- created invoices.created_at:
+--   psql "$DATABASE_URL" -f db/flagged-indexes.sql
+-- Not run by the application: create extension needs a role allowed to create it, and the update of the invoices
+-- is a one-time backfill. The indexes build concurrently, so that writes to the tables go on meanwhile.
+--
+-- Indexes of the REST API over the flagged rows, see FlaggedRepository. Pages are read newest first by
+-- (created_at, id), alone or after an equality filter, so every filter gets its own (filter, created_at, id)
+-- index and a page is one range scan whatever the filters or the depth.
+
+create index concurrently if not exists flagged_contributions_created_idx
+    on fraud.contributions (created_at, id);
+create index concurrently if not exists flagged_contributions_member_created_idx
+    on fraud.contributions (member_id, created_at, id);
+create index concurrently if not exists flagged_contributions_sponsor_created_idx
+    on fraud.contributions (sponsor_id, created_at, id);
+create index concurrently if not exists flagged_contributions_period_created_idx
+    on fraud.contributions (period, created_at, id);
+
+create index concurrently if not exists flagged_invoices_created_idx
+    on fraud.invoices (created_at, id);
+create index concurrently if not exists flagged_invoices_customer_created_idx
+    on fraud.invoices (customer_id, created_at, id);
+
+-- Invoices flagged before invoices.created_at existed sort as the oldest; found through flagged_invoices_created_idx.
+update fraud.invoices
+set created_at = timestamp '1970-01-01'
+where created_at is null;
+
+-- Reason filters match text anywhere in the reasons (ILIKE '%...%'), which only a trigram index serves.
+-- Without the extension the filter still works, by scanning the rows of the other filters.
+create extension if not exists pg_trgm;
+create index concurrently if not exists flagged_contributions_reason_trgm_idx
+    on fraud.contributions using gin (reason_flagged gin_trgm_ops);
+create index concurrently if not exists flagged_invoices_reason_trgm_idx
+    on fraud.invoices using gin (reason_flagged gin_trgm_ops);
@@ -0,0 +1,132 @@
+package debezium.component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import debezium.dto.ChangeEvent;
+import debezium.dto.SourceInfo;
+import debezium.enums.Operation;
+import debezium.service.UtilService;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes Debezium JsonConverter envelopes into {@link ChangeEvent}s.
+ * The op code, before/after rows, source metadata and decimal scales are all read in one
+ * streaming pass; no intermediate JSON tree is built.
+ * <p>
+ * Both converter modes are accepted: with {@code schemas.enable=true} the message is a {schema, payload} envelope
+ * and scales come from the (cached) schema block; with {@code schemas.enable=false} the message is the payload
+ * itself and scales come from {@link SchemaScaleCache#scalesForTable(String)}.
+ */
+@Component
+public class ChangeEventDecoder {
+    private final ObjectMapper mapper;
+    private final ObjectReader sourceReader;
+    private final SchemaScaleCache schemaScaleCache;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public ChangeEventDecoder(UtilService utilService, SchemaScaleCache schemaScaleCache) {
+        this.mapper = utilService.mapper;
+        this.sourceReader = mapper.readerFor(SourceInfo.class);
+        this.schemaScaleCache = schemaScaleCache;
+    }
+
+    /**
+     * Decodes the raw JSON of a change event.
+     *
+     * @param rawJson The raw JSON string of the change event.
+     * @param rowType The type the before/after rows are bound to.
+     * @param <T>     The row type.
+     * @return The decoded change event, or null if the message is empty or has no payload (tombstones, heartbeats).
+     * @throws IOException if the message is not valid JSON or a row cannot be bound to the row type.
+     */
+    public <T> ChangeEvent<T> decode(String rawJson, Class<T> rowType) throws IOException {
+        if (rawJson == null || rawJson.isEmpty()) {
+            return null;
+        }
+        Payload<T> payload = new Payload<>(readers.computeIfAbsent(rowType, mapper::readerFor));
+        Map<String, Integer> fieldScales = null;
+        try (JsonParser parser = mapper.getFactory().createParser(rawJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (name) {
+                    case "schema" -> {
+                        if (token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        int start = (int) parser.currentTokenLocation().getCharOffset();
+                        parser.skipChildren();
+                        int end = (int) parser.currentLocation().getCharOffset();
+                        fieldScales = schemaScaleCache.scales(rawJson, start, end);
+                    }
+                    case "payload" -> {
+                        if (token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String field = parser.currentName();
+                            payload.read(field, parser.nextToken(), parser);
+                        }
+                    }
+                    // schemaless message: the root object is the payload
+                    default -> payload.read(name, token, parser);
+                }
+            }
+        }
+        if (!payload.present) {
+            return null;
+        }
+        String table = payload.source == null ? null : payload.source.table();
+        if (fieldScales == null) {
+            fieldScales = schemaScaleCache.scalesForTable(table);
+        } else {
+            schemaScaleCache.remember(table, fieldScales);
+        }
+        return new ChangeEvent<>(payload.op, payload.before, payload.after, payload.source, payload.tsMs, fieldScales);
+    }
+
+    /**
+     * Accumulates payload fields as they are streamed.
+     */
+    private final class Payload<T> {
+        private final ObjectReader rowReader;
+        private boolean present;
+        private Operation op;
+        private T before;
+        private T after;
+        private SourceInfo source;
+        private long tsMs;
+
+        private Payload(ObjectReader rowReader) {
+            this.rowReader = rowReader;
+        }
+
+        /**
+         * Reads one payload field. The parser must be positioned on the field's value token.
+         */
+        private void read(String name, JsonToken token, JsonParser parser) throws IOException {
+            switch (name) {
+                case "op" -> {
+                    op = Operation.fromCode(parser.getValueAsString());
+                    present = true;
+                }
+                case "before" -> before = token == JsonToken.START_OBJECT ? rowReader.readValue(parser) : null;
+                case "after" -> after = token == JsonToken.START_OBJECT ? rowReader.readValue(parser) : null;
+                case "source" -> source = token == JsonToken.START_OBJECT ? sourceReader.readValue(parser) : null;
+                case "ts_ms" -> tsMs = parser.getValueAsLong();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+}
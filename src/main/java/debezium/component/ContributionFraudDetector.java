@@ -1,28 +1,52 @@
 package debezium.component;
 
-import debezium.enums.MonthEnum;
+import debezium.config.FraudProperties;
+import debezium.dto.DetectionContext;
 import debezium.model.Contribution;
+import debezium.rules.FraudRule;
+import debezium.rules.LookupExecutor;
+import debezium.rules.RuleContext;
+import debezium.rules.RuleInput;
 import debezium.service.ContributionService;
-import debezium.service.UtilService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.Month;
-import java.time.YearMonth;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+@Slf4j
 @Component
 public class ContributionFraudDetector {
     private final ContributionService contributionService;
-    private final UtilService utilService;
-
-    public ContributionFraudDetector(ContributionService contributionService, UtilService utilService) {
+    private final FraudProperties fraudProperties;
+    private final List<FraudRule> rules;
+    private final LookupExecutor lookupExecutor;
+    // timers of each rule, indexed like rules and then by branch
+    private final PipelineMetrics.StageMeters[][] ruleMeters;
+
+    public ContributionFraudDetector(ContributionService contributionService, FraudProperties fraudProperties,
+                                     List<FraudRule> rules, PipelineMetrics pipelineMetrics, LookupExecutor lookupExecutor) {
         this.contributionService = contributionService;
-        this.utilService = utilService;
+        this.fraudProperties = fraudProperties;
+        this.lookupExecutor = lookupExecutor;
+        this.rules = rules.stream()
+                .filter(rule -> !fraudProperties.getRules().getDisabled().contains(rule.name()))
+                .sorted(Comparator.comparingInt(FraudRule::cost))
+                .toList();
+        this.ruleMeters = new PipelineMetrics.StageMeters[this.rules.size()][];
+        for (int i = 0; i < this.rules.size(); i++) {
+            String name = this.rules.get(i).name();
+            ruleMeters[i] = new PipelineMetrics.StageMeters[]{
+                    pipelineMetrics.rule(name, PipelineMetrics.Branch.NEW),
+                    pipelineMetrics.rule(name, PipelineMetrics.Branch.UPDATE)
+            };
+        }
+        log.info("Fraud rules in evaluation order: {}", this.rules.stream().map(FraudRule::name).toList());
     }
 
     /**
@@ -33,42 +57,20 @@ public class ContributionFraudDetector {
      * @return An Optional containing a string with reasons for fraud detection, or empty if no fraud is detected.
      */
     public Optional<String> detectFraud(Contribution before, Contribution after) {
+        return detectFraud(before, after, null);
+    }
 
-        List<String> reasons = new ArrayList<>();
-
-        BigDecimal beforeTotal = Optional.ofNullable(before.getEe()).orElse(BigDecimal.ZERO)
-                .add(Optional.ofNullable(before.getEr()).orElse(BigDecimal.ZERO));
-
-        BigDecimal afterTotal = Optional.ofNullable(after.getEe()).orElse(BigDecimal.ZERO)
-                .add(Optional.ofNullable(after.getEr()).orElse(BigDecimal.ZERO));
-
-
-        double rate = afterTotal.divide(beforeTotal, RoundingMode.HALF_UP).doubleValue();
-        if (rate > 1.99 || rate < 0.51) {
-            reasons.add(String.format(
-                    "&#128681 Contribution amount increased/decreased by large margin of x%.6f (from %.2f to %.2f)",
-                    rate,
-                    beforeTotal.doubleValue(),
-                    afterTotal.doubleValue()
-            ));
-        }
-
-        //check average contribution amount to detect suspicious increases
-        checkPreviousAverageContribution(after, 10, reasons);
-
-        //check average contribution amount to detect suspicious increases
-        checkAverageAllContributions(afterTotal, reasons);
-
-        //check maximum allowed contribution
-        checkMaximumAllowedContribution(afterTotal, BigDecimal.valueOf(9999.99), reasons);
-
-        //check other conditions
-
-        if (!reasons.isEmpty()) {
-            return Optional.of(String.join("<br><br>", reasons));
-        }
-
-        return Optional.empty(); // No fraud
+    /**
+     * Detects fraud based on the contribution before and after a change, reading past contributions
+     * and population statistics from the given context instead of the database.
+     *
+     * @param before  The contribution before the change.
+     * @param after   The contribution after the change.
+     * @param context The locally maintained detection data, or null to query the database.
+     * @return An Optional containing a string with reasons for fraud detection, or empty if no fraud is detected.
+     */
+    public Optional<String> detectFraud(Contribution before, Contribution after, DetectionContext context) {
+        return evaluate(new RuleContext(before, after, fraudProperties.getHistorySize(), context, contributionService));
     }
 
     /**
@@ -78,114 +80,89 @@ public class ContributionFraudDetector {
      * @return An Optional containing a string with reasons for fraud detection, or empty if no fraud is detected.
      */
     public Optional<String> detectFraud(Contribution after) {
-        List<String> reasons = new ArrayList<>();
-
-        //check if the contribution date is x months in the past
-        if (utilService.isMonthsAgo(
-                after.getYear(),
-                after.getMonth(),
-                4
-        )) {
-            //contribution should be posted earlier, why ARREARS?
-            reasons.add(String.format("&#9889 Contribution date is more than %s months in the past (%s/%s)", 4, after.getYear(), after.getMonth()));
-        }
-
-        // check last contribution date
-        Contribution last = contributionService.getPreviousContribution(after.getRecordId());
-        if (last != null) {
-            YearMonth lastContributionDate = YearMonth.of(last.getYear(), Month.valueOf(
-                    MonthEnum.valueOf(last.getMonth().toUpperCase()).getName()
-            ));
-            YearMonth currentContributionDate = YearMonth.of(after.getYear(), Month.valueOf(
-                    MonthEnum.valueOf(after.getMonth().toUpperCase()).getName()
-            ));
-
-
-            //calculate the difference in year and months
-            long monthsDiff = ChronoUnit.MONTHS.between(lastContributionDate, currentContributionDate);
-
-            //check if the currentContributionDate-lastContributionDate is more than x months
-            if (monthsDiff >= 4) {
-                //before this contribution, member had x dormant months. Check why
-                reasons.add(String.format("&#128165 Sudden large contribution detected. Last contribution was %s months before this. ", monthsDiff));
-            }
-
-        }
-
-        //check average contribution amount to detect suspicious increases
-        checkPreviousAverageContribution(after, 10, reasons);
-
-        BigDecimal totalContribution = Optional.ofNullable(after.getEe()).orElse(BigDecimal.ZERO)
-                .add(Optional.ofNullable(after.getEr()).orElse(BigDecimal.ZERO));
-        //check the average of all contributions to detect suspicious increases
-        checkAverageAllContributions(totalContribution, reasons);
-
-        //check maximum allowed contribution
-        checkMaximumAllowedContribution(totalContribution, BigDecimal.valueOf(9999.99), reasons);
-
-        //check other conditions
-
-        if (!reasons.isEmpty()) {
-            return Optional.of(String.join("<br><br>", reasons));
-        }
-
-        return Optional.empty(); // No fraud
+        return detectFraud(after, (DetectionContext) null);
     }
 
     /**
-     * Checks if the contribution amount is suspiciously high compared to the average of the last 10 contributions.
-     * If it is, it adds a reason to the list.
+     * Detects fraud based on the contribution date, last contribution date, and average contribution amount,
+     * reading past contributions and population statistics from the given context instead of the database.
      *
-     * @param after          The contribution after the change.
-     * @param numberOfMonths The number of months to consider for the average.
-     * @param reasons        The list of reasons for fraud detection.
+     * @param after   The contribution after the change.
+     * @param context The locally maintained detection data, or null to query the database.
+     * @return An Optional containing a string with reasons for fraud detection, or empty if no fraud is detected.
      */
-    private void checkPreviousAverageContribution(Contribution after, int numberOfMonths, List<String> reasons) {
-        //get the average of the last 10 contributions
-        BigDecimal averageContribution = contributionService.getAverageXContributions(after.getRecordId(), numberOfMonths);
-        BigDecimal totalContribution = Optional.ofNullable(after.getEe()).orElse(BigDecimal.ZERO)
-                .add(Optional.ofNullable(after.getEr()).orElse(BigDecimal.ZERO));
-        if (averageContribution != null) {
-            if (totalContribution.compareTo(averageContribution.multiply(BigDecimal.valueOf(2))) > 0)
-                reasons.add(String.format("&#128293 Contribution amount is suspiciously high: %.2f (Members' Average: %.2f)",
-                        totalContribution.doubleValue(),
-                        averageContribution.doubleValue()));
-        }
+    public Optional<String> detectFraud(Contribution after, DetectionContext context) {
+        return evaluate(new RuleContext(null, after, fraudProperties.getHistorySize(), context, contributionService));
     }
 
-
     /**
-     * Checks if the total contribution amount is suspiciously high compared to the average contributions.
-     * If the total contribution is more than 9x the average, it adds a reason to the list.
+     * Runs the applicable rules cheapest first. With the flag-once policy, expensive rules are skipped
+     * as soon as a cheaper rule has flagged the contribution.
+     * <p>
+     * With concurrent lookups, the database lookups of all applicable rules are started up front, and each pass
+     * evaluates the rules whose data has arrived, so the contribution waits for its slowest lookup only.
+     * Reasons are reported in rule order regardless of the order rules were evaluated in.
      *
-     * @param afterTotal The total contribution amount after the change.
-     * @param reasons    The list of reasons for fraud detection.
+     * @param context The contribution change and the data about it.
+     * @return An Optional containing a string with reasons for fraud detection, or empty if no fraud is detected.
      */
-    private void checkAverageAllContributions(BigDecimal afterTotal, List<String> reasons) {
-        Contribution averageContribution = contributionService.getAverageContribution();
-        if (averageContribution != null) {
-            BigDecimal averageTotal = Optional.ofNullable(averageContribution.getEe()).orElse(BigDecimal.ZERO)
-                    .add(Optional.ofNullable(averageContribution.getEr()).orElse(BigDecimal.ZERO));
-            if (afterTotal.compareTo(averageTotal.multiply(BigDecimal.valueOf(9))) > 0) {
-                reasons.add(String.format("&#128293 Contribution amount is suspiciously high: %.2f (DB Average: %.2f)",
-                        afterTotal.doubleValue(),
-                        averageTotal.doubleValue()));
+    private Optional<String> evaluate(RuleContext context) {
+        FraudProperties.Rules policy = fraudProperties.getRules();
+        List<Integer> pending = new ArrayList<>(rules.size());
+        Set<RuleInput> inputs = EnumSet.noneOf(RuleInput.class);
+        for (int i = 0; i < rules.size(); i++) {
+            FraudRule rule = rules.get(i);
+            if (context.isUpdate() ? rule.appliesToUpdates() : rule.appliesToNewRecords()) {
+                pending.add(i);
+                inputs.addAll(rule.requires());
             }
         }
-    }
+        if (lookupExecutor.isEnabled()) {
+            context.prefetch(lookupExecutor, inputs, fraudProperties.getPopulation().getMinSamples());
+        }
 
-    /**
-     * Checks if the total contribution amount exceeds the maximum allowed contribution.
-     * If it does, it adds a reason to the list.
-     *
-     * @param afterTotal The total contribution amount after the change.
-     * @param maxAllowed The maximum allowed contribution amount.
-     * @param reasons    The list of reasons for fraud detection.
-     */
-    public void checkMaximumAllowedContribution(BigDecimal afterTotal, BigDecimal maxAllowed, List<String> reasons) {
-        if (afterTotal.compareTo(maxAllowed) > 0) {
-            reasons.add(String.format("&#128293 Contribution amount is too high: %.2f (max allowed: %.2f)", afterTotal.doubleValue(), maxAllowed.doubleValue()));
+        String[] reasons = new String[rules.size()];
+        boolean flagged = false;
+        int branch = PipelineMetrics.Branch.of(context.isUpdate()).ordinal();
+        while (!pending.isEmpty()) {
+            boolean evaluated = false;
+            for (Iterator<Integer> it = pending.iterator(); it.hasNext(); ) {
+                int i = it.next();
+                FraudRule rule = rules.get(i);
+                if (policy.isFlagOnce() && flagged && rule.cost() >= policy.getExpensiveCost()) {
+                    it.remove();
+                    continue;
+                }
+                if (!context.isReady(rule.requires())) {
+                    continue; // its lookup is still running
+                }
+                long start = System.nanoTime();
+                Optional<String> reason = rule.evaluate(context);
+                ruleMeters[i][branch].record(reason.isPresent() ? PipelineMetrics.Outcome.FLAGGED : PipelineMetrics.Outcome.CLEAN, start);
+                if (reason.isPresent()) {
+                    reasons[i] = reason.get();
+                    flagged = true;
+                }
+                it.remove();
+                evaluated = true;
+            }
+            if (!evaluated && !pending.isEmpty()) {
+                context.awaitAnyLookup();
+            }
+        }
+        context.cancelLookups();
+
+        if (flagged) {
+            List<String> flaggedReasons = new ArrayList<>();
+            for (String reason : reasons) {
+                if (reason != null) {
+                    flaggedReasons.add(reason);
+                }
+            }
+            return Optional.of(String.join("<br><br>", flaggedReasons));
         }
+
+        return Optional.empty(); // No fraud
     }
 
     /**
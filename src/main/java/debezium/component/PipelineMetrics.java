@@ -0,0 +1,150 @@
+package debezium.component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers of every stage of the contribution and invoice pipelines.
+ * <p>
+ * Meters are registered once per stage and tag combination and handed out as {@link StageMeters}, which callers
+ * keep, so that recording on the stream threads is a plain array lookup with no tag building or registry lookup.
+ * Each timer also counts its events. Histograms use a fixed, bounded bucket range, so they can stay on under
+ * full load.
+ */
+@Component
+public class PipelineMetrics {
+    public static final String DECODE = "pipeline.decode";
+    public static final String DEDUP = "pipeline.dedup";
+    public static final String DETECTION = "pipeline.detection";
+    public static final String RULE = "pipeline.rule";
+    public static final String QUERY = "pipeline.query";
+    public static final String SERIALIZATION = "pipeline.serialization";
+    public static final String PERSISTENCE = "pipeline.persistence";
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(500);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(10);
+
+    private final MeterRegistry registry;
+    private final Map<String, StageMeters> stages = new ConcurrentHashMap<>();
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * The result of one pass through a stage, published as the {@code outcome} tag.
+     */
+    public enum Outcome {
+        OK, FLAGGED, CLEAN, SKIPPED, ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The kind of change event, published as the {@code branch} tag.
+     */
+    public enum Branch {
+        NEW, UPDATE;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        public static Branch of(boolean update) {
+            return update ? UPDATE : NEW;
+        }
+    }
+
+    /**
+     * Parsing of raw change event envelopes: ok, skipped (tombstones, heartbeats) or error.
+     */
+    public StageMeters decode(String topic) {
+        return stage(DECODE, Tags.of("topic", topic), EnumSet.of(Outcome.OK, Outcome.SKIPPED, Outcome.ERROR));
+    }
+
+    /**
+     * Duplicate checks: ok (passed on) or skipped (dropped as a replay).
+     */
+    public StageMeters dedup(String topic) {
+        return stage(DEDUP, Tags.of("topic", topic), EnumSet.of(Outcome.OK, Outcome.SKIPPED));
+    }
+
+    /**
+     * Fraud detection of one change event, from conversion to the history update: flagged, clean or error.
+     */
+    public StageMeters detection(String topic, Branch branch) {
+        return stage(DETECTION, Tags.of("topic", topic, "branch", branch.tag), EnumSet.of(Outcome.FLAGGED, Outcome.CLEAN, Outcome.ERROR));
+    }
+
+    /**
+     * Evaluation of one fraud rule: flagged or clean.
+     */
+    public StageMeters rule(String rule, Branch branch) {
+        return stage(RULE, Tags.of("rule", rule, "branch", branch.tag), EnumSet.of(Outcome.FLAGGED, Outcome.CLEAN));
+    }
+
+    /**
+     * One native database query: ok, skipped (no result) or error.
+     */
+    public StageMeters query(String query) {
+        return stage(QUERY, Tags.of("query", query), EnumSet.of(Outcome.OK, Outcome.SKIPPED, Outcome.ERROR));
+    }
+
+    /**
+     * Serialization of processed records: ok or error.
+     */
+    public StageMeters serialization(String topic) {
+        return stage(SERIALIZATION, Tags.of("topic", topic), EnumSet.of(Outcome.OK, Outcome.ERROR));
+    }
+
+    /**
+     * Persistence of one batch of processed records: ok or error.
+     */
+    public StageMeters persistence(String topic) {
+        return stage(PERSISTENCE, Tags.of("topic", topic), EnumSet.of(Outcome.OK, Outcome.ERROR));
+    }
+
+    private StageMeters stage(String name, Tags tags, Set<Outcome> outcomes) {
+        return stages.computeIfAbsent(name + tags, key -> new StageMeters(registry, name, tags, outcomes));
+    }
+
+    /**
+     * The timers of one stage and tag combination, one per outcome.
+     */
+    public static final class StageMeters {
+        private final Timer[] timers = new Timer[Outcome.values().length];
+
+        private StageMeters(MeterRegistry registry, String name, Tags tags, Set<Outcome> outcomes) {
+            for (Outcome outcome : outcomes) {
+                timers[outcome.ordinal()] = Timer.builder(name)
+                        .tags(tags)
+                        .tag("outcome", outcome.tag)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED)
+                        .maximumExpectedValue(MAX_EXPECTED)
+                        .register(registry);
+            }
+        }
+
+        /**
+         * Records a pass through the stage.
+         *
+         * @param outcome    The result of the pass.
+         * @param startNanos The {@link System#nanoTime()} at the start of the pass.
+         */
+        public void record(Outcome outcome, long startNanos) {
+            Timer timer = timers[outcome.ordinal()];
+            if (timer != null) {
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package debezium.component;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs at most one warning per kind of message and interval, counting the ones it drops, so that a burst of
+ * failing records costs a counter increment per record instead of a log write. Stack traces are only logged
+ * at debug level.
+ */
+public class RateLimitedLogger {
+    private final Logger log;
+    private final long intervalNanos;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param log      The logger to write to.
+     * @param interval The minimum time between two warnings of the same kind.
+     */
+    public RateLimitedLogger(Logger log, Duration interval) {
+        this.log = log;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    private static final class Window {
+        private final AtomicLong nextNanos = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder suppressed = new LongAdder();
+    }
+
+    /**
+     * Logs a warning unless one of the same kind was logged within the interval.
+     *
+     * @param kind   The kind of message, e.g. the failure category.
+     * @param error  The failure; its message is logged, its stack trace only at debug level.
+     * @param format The message format, with {@link String#format} placeholders.
+     * @param args   The message arguments.
+     */
+    public void warn(String kind, Throwable error, String format, Object... args) {
+        Window window = windows.computeIfAbsent(kind, key -> new Window());
+        long now = System.nanoTime();
+        long next = window.nextNanos.get();
+        if ((next != Long.MIN_VALUE && now - next < 0) || !window.nextNanos.compareAndSet(next, now + intervalNanos)) {
+            window.suppressed.increment();
+            return;
+        }
+        long suppressed = window.suppressed.sumThenReset();
+        log.warn("{}: {} ({} similar messages suppressed)", String.format(format, args), error, suppressed);
+        if (log.isDebugEnabled()) {
+            log.debug("Stack trace of the failure above", error);
+        }
+    }
+}
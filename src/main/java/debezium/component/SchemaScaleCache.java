@@ -0,0 +1,207 @@
+package debezium.component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import debezium.config.CdcProperties;
+import debezium.service.UtilService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the decimal field scales of Debezium schema blocks.
+ * Table schemas almost never change, so the schema block of each message is reduced to a cheap fingerprint
+ * and only parsed the first time that fingerprint is seen. Returned maps are immutable and shared.
+ */
+@Slf4j
+@Component
+public class SchemaScaleCache {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final JsonFactory jsonFactory;
+    private final CdcProperties cdcProperties;
+    private final Map<Long, Map<String, Integer>> scalesByFingerprint = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> scalesByTable = new ConcurrentHashMap<>();
+    private final Map<String, TableScales> resolvedByTable = new ConcurrentHashMap<>();
+
+    public SchemaScaleCache(UtilService utilService, CdcProperties cdcProperties) {
+        this.jsonFactory = utilService.mapper.getFactory();
+        this.cdcProperties = cdcProperties;
+    }
+
+    /**
+     * Returns the field scales of the schema block found at {@code [start, end)} of the raw message.
+     *
+     * @param rawJson The raw JSON string of the change event.
+     * @param start   The offset of the schema block's opening brace.
+     * @param end     The offset just past the schema block's closing brace.
+     * @return An immutable map of field names to scales.
+     * @throws IOException if the schema block is not valid JSON.
+     */
+    public Map<String, Integer> scales(String rawJson, int start, int end) throws IOException {
+        long fingerprint = fingerprint(rawJson, start, end);
+        Map<String, Integer> scales = scalesByFingerprint.get(fingerprint);
+        if (scales != null) {
+            return scales;
+        }
+        try (JsonParser parser = jsonFactory.createParser(rawJson.substring(start, end))) {
+            parser.nextToken();
+            scales = Map.copyOf(readFieldScales(parser));
+        }
+        if (scalesByFingerprint.size() >= cdcProperties.getSchemaCacheSize()) {
+            //note: schemas only change with DDL, so a full cache means something unusual; start over
+            scalesByFingerprint.clear();
+        }
+        scalesByFingerprint.put(fingerprint, scales);
+        log.info("Cached decimal scales {} for new schema fingerprint {}", scales, Long.toHexString(fingerprint));
+        return scales;
+    }
+
+    /**
+     * Records the scales seen on a schema-bearing event, so later schemaless events of the same table can use them.
+     *
+     * @param table  The source table name.
+     * @param scales The scales read from the event's schema block.
+     */
+    public void remember(String table, Map<String, Integer> scales) {
+        if (table == null || scales.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> known = scalesByTable.get(table);
+        //note: the same schema parsed again after the fingerprint cache was cleared is a new but equal map
+        if (known != scales && !scales.equals(known)) {
+            scalesByTable.put(table, scales);
+        }
+    }
+
+    /**
+     * Returns the scales for a schemaless event of the given table.
+     * Configured scales take precedence over scales learned from schema-bearing events. The merged map is built
+     * once per table and rebuilt only after a schema-bearing event changes the learned scales.
+     *
+     * @param table The source table name.
+     * @return An immutable map of field names to scales, empty if nothing is known about the table.
+     */
+    public Map<String, Integer> scalesForTable(String table) {
+        if (table == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> learned = scalesByTable.get(table);
+        TableScales resolved = resolvedByTable.get(table);
+        if (resolved != null && resolved.learned() == learned) {
+            return resolved.scales();
+        }
+        Map<String, Integer> scales = resolve(cdcProperties.getFieldScales().get(table), learned);
+        resolvedByTable.put(table, new TableScales(learned, scales));
+        return scales;
+    }
+
+    private static Map<String, Integer> resolve(Map<String, Integer> configured, Map<String, Integer> learned) {
+        if (configured == null || configured.isEmpty()) {
+            return learned == null ? Collections.emptyMap() : learned;
+        }
+        if (learned == null) {
+            return Map.copyOf(configured);
+        }
+        Map<String, Integer> merged = new HashMap<>(learned);
+        merged.putAll(configured);
+        return Map.copyOf(merged);
+    }
+
+    /**
+     * The resolved scales of a table and the learned scales they were built from, which tell when they are stale.
+     */
+    private record TableScales(Map<String, Integer> learned, Map<String, Integer> scales) {
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the schema block, without copying it out of the message.
+     */
+    static long fingerprint(String rawJson, int start, int end) {
+        long hash = FNV_OFFSET_BASIS ^ (end - start);
+        for (int i = start; i < end; i++) {
+            hash ^= rawJson.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Collects the decimal scales declared in a schema block. Debezium describes the before and after
+     * structs with the same fields, so scales from either are equivalent.
+     * The parser must be positioned on the schema's START_OBJECT token.
+     */
+    private Map<String, Integer> readFieldScales(JsonParser parser) throws IOException {
+        Map<String, Integer> fieldScales = new HashMap<>();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return fieldScales;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (!"fields".equals(name) || token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            // envelope fields: before, after, source, op, ...
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readStructScales(parser, fieldScales);
+            }
+        }
+        return fieldScales;
+    }
+
+    /**
+     * Reads one envelope field schema, collecting scales from its nested row fields if it is a struct.
+     */
+    private void readStructScales(JsonParser parser, Map<String, Integer> fieldScales) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (!"fields".equals(name) || token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readFieldScale(parser, fieldScales);
+            }
+        }
+    }
+
+    /**
+     * Reads one row field schema and records its scale if it declares one.
+     */
+    private void readFieldScale(JsonParser parser, Map<String, Integer> fieldScales) throws IOException {
+        String field = null;
+        Integer scale = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("field".equals(name)) {
+                field = parser.getValueAsString();
+            } else if ("parameters".equals(name) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String parameter = parser.currentName();
+                    parser.nextToken();
+                    if ("scale".equals(parameter)) {
+                        scale = parser.getValueAsInt();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (field != null && scale != null) {
+            fieldScales.put(field, scale);
+        }
+    }
+}
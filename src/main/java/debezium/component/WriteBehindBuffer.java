@@ -0,0 +1,338 @@
+package debezium.component;
+
+import debezium.config.WriteBehindProperties;
+import debezium.enums.FailureCategory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A bounded buffer of rows of one table, written in batches by its own thread once {@code flush-rows} rows are
+ * buffered or the oldest row has waited {@code flush-interval}.
+ * <p>
+ * Batches are written one at a time in the order rows were added, and the callback handed in with rows runs once
+ * they are written, which is when their offsets may be committed. Rows count against {@code max-buffered-rows}
+ * until written, so {@link #add} blocks the caller while writes fall behind. A write that failed transiently, see
+ * {@link FailureCategory#isTransient}, is retried with exponential backoff until it succeeds, so while the database
+ * is down the buffer fills up and the listener stops. A batch refused for its content is written again in halves
+ * until the rows that fail on their own are found; those are dead-lettered, and the rest is written.
+ * Callbacks run only once every row they were added with is written or dead-lettered: rows still unwritten when the
+ * buffer is closed or {@link #discard discarded} are not acknowledged, and their records are delivered again.
+ *
+ * @param <T> The row type.
+ */
+@Slf4j
+public class WriteBehindBuffer<T> implements AutoCloseable {
+    private final String name;
+    private final Consumer<List<T>> writer;
+    private final BiConsumer<T, RuntimeException> deadLetter;
+    private final PipelineMetrics.StageMeters meters;
+    private final int flushRows;
+    private final long flushIntervalNanos;
+    private final int maxBufferedRows;
+    private final long retryBackoffMillis;
+    private final long maxRetryBackoffMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final Condition retryAbandoned = lock.newCondition();
+    private final Thread thread;
+
+    private List<T> pending = new ArrayList<>();
+    private List<Runnable> callbacks = new ArrayList<>();
+    private long firstAddedNanos;
+    //note: rows buffered or being written, which is what the bound applies to
+    private int bufferedRows;
+    private long addedBatches;
+    //note: batches written, or dropped by discard
+    private long settledBatches;
+    //note: advanced by discard, so that the batch being written is given up
+    private long generation;
+    private boolean flushRequested;
+    private boolean closed;
+
+    /**
+     * @param name       The table the rows go to, used in the thread name and log messages.
+     * @param properties The flush triggers, bound and retries.
+     * @param writer     Writes a batch of rows in one transaction, throwing if it did not commit.
+     * @param deadLetter Takes a row the database refuses on its own, with the failure.
+     * @param meters     Record every write attempt as ok or error.
+     */
+    public WriteBehindBuffer(String name, WriteBehindProperties properties, Consumer<List<T>> writer,
+                             BiConsumer<T, RuntimeException> deadLetter, PipelineMetrics.StageMeters meters) {
+        this.name = name;
+        this.writer = writer;
+        this.deadLetter = deadLetter;
+        this.meters = meters;
+        this.flushRows = Math.max(1, properties.getFlushRows());
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        this.maxBufferedRows = Math.max(flushRows, properties.getMaxBufferedRows());
+        this.retryBackoffMillis = properties.getRetryBackoff().toMillis();
+        this.maxRetryBackoffMillis = properties.getMaxRetryBackoff().toMillis();
+        this.thread = new Thread(this::run, "write-behind-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Buffers rows, waiting while the buffer is full. Rows larger than the whole buffer are accepted once it is empty.
+     *
+     * @param rows      The rows to write.
+     * @param onWritten Runs on the writer thread once the rows are written, and never if they are not.
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    public void add(List<T> rows, Runnable onWritten) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (bufferedRows > 0 && bufferedRows + rows.size() > maxBufferedRows && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new IllegalStateException("Write-behind buffer of " + name + " is closed");
+            }
+            boolean first = pending.isEmpty();
+            if (first) {
+                firstAddedNanos = System.nanoTime();
+            }
+            pending.addAll(rows);
+            callbacks.add(onWritten);
+            bufferedRows += rows.size();
+            addedBatches++;
+            // wake the writer to start the flush interval, or to write a full batch
+            if (first || pending.size() >= flushRows) {
+                flushNeeded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all rows added so far and waits until they are written, the buffer is closed, or the timeout passes.
+     *
+     * @param timeout The longest time to wait.
+     * @return true if all rows added so far were written or discarded, false if some are still waiting.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        lock.lockInterruptibly();
+        try {
+            long target = addedBatches;
+            while (settledBatches < target && thread.isAlive()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                flushRequested = true;
+                flushNeeded.signal();
+                written.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+            }
+            return settledBatches >= target;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the rows not written yet without running their callbacks, and gives up retrying the batch being
+     * written, so that their records are delivered again. A batch whose write is already under way may still
+     * commit, and is then written twice.
+     *
+     * @return The number of rows dropped or given up.
+     */
+    public int discard() {
+        lock.lock();
+        try {
+            int dropped = bufferedRows;
+            generation++;
+            bufferedRows -= pending.size();
+            settledBatches = addedBatches;
+            pending = new ArrayList<>();
+            callbacks = new ArrayList<>();
+            flushRequested = false;
+            notFull.signalAll();
+            written.signalAll();
+            retryAbandoned.signalAll();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of rows buffered or being written.
+     */
+    public int bufferedRows() {
+        lock.lock();
+        try {
+            return bufferedRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the rows still buffered and stops the writer thread. A write that is failing is not retried any more,
+     * so the rows left are not acknowledged.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+            retryAbandoned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        thread.join();
+    }
+
+    private void run() {
+        while (true) {
+            List<T> batch;
+            List<Runnable> batchCallbacks;
+            long batchGeneration;
+            lock.lock();
+            try {
+                while (!closed && !flushRequested && pending.size() < flushRows) {
+                    if (pending.isEmpty()) {
+                        flushNeeded.awaitUninterruptibly();
+                        continue;
+                    }
+                    long wait = firstAddedNanos + flushIntervalNanos - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    flushNeeded.awaitNanos(wait);
+                }
+                flushRequested = false;
+                if (pending.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = pending;
+                batchCallbacks = callbacks;
+                batchGeneration = generation;
+                pending = new ArrayList<>();
+                callbacks = new ArrayList<>();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean done = write(batch, batchGeneration);
+            //note: the callbacks of a discarded batch may still run here; the sink no longer waits for them
+            if (done) {
+                batchCallbacks.forEach(WriteBehindBuffer::runCallback);
+            }
+
+            lock.lock();
+            try {
+                bufferedRows -= batch.size();
+                if (batchGeneration == generation) {
+                    settledBatches += batchCallbacks.size();
+                }
+                notFull.signalAll();
+                written.signalAll();
+                if (!done && closed) {
+                    log.error("Stopped with {} rows of {} unwritten; their records were not acknowledged and will be delivered again",
+                            bufferedRows + batch.size(), name);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, retrying transient failures until it is written.
+     *
+     * @return false if the buffer was closed or discarded before the batch could be written.
+     */
+    private boolean write(List<T> batch, long batchGeneration) {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                writer.accept(batch);
+                meters.record(PipelineMetrics.Outcome.OK, start);
+                if (attempt > 1) {
+                    log.info("Wrote {} rows of {} after {} attempts", batch.size(), name, attempt);
+                }
+                return true;
+            } catch (RuntimeException e) {
+                meters.record(PipelineMetrics.Outcome.ERROR, start);
+                if (!FailureCategory.isTransient(e)) {
+                    return reject(batch, batchGeneration, e);
+                }
+                log.warn("Failed to write {} rows of {}, attempt {}, retrying in {} ms: {}", batch.size(), name, attempt, backoff, e.getMessage());
+            }
+            if (!awaitRetry(backoff, batchGeneration)) {
+                return false;
+            }
+            backoff = Math.min(maxRetryBackoffMillis, backoff * 2);
+        }
+    }
+
+    /**
+     * Finds the rows of a batch the database refused for its content by writing its halves on their own, and
+     * dead-letters each row that fails alone.
+     *
+     * @return false if the buffer was closed or discarded before the rest of the batch could be written.
+     */
+    private boolean reject(List<T> batch, long batchGeneration, RuntimeException e) {
+        if (batch.size() == 1) {
+            try {
+                deadLetter.accept(batch.get(0), e);
+            } catch (RuntimeException deadLetterError) {
+                log.warn("Failed to dead-letter a row of {}: {}", name, deadLetterError.getMessage());
+            }
+            return true;
+        }
+        log.warn("Failed to write {} rows of {}, writing them in halves to find the failing rows: {}", batch.size(), name, e.getMessage());
+        int half = batch.size() / 2;
+        return write(batch.subList(0, half), batchGeneration) && write(batch.subList(half, batch.size()), batchGeneration);
+    }
+
+    //note: woken by close and discard, so that neither waits for the database to come back
+    private boolean awaitRetry(long backoffMillis, long batchGeneration) {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+            while (!closed && batchGeneration == generation && nanos > 0) {
+                nanos = retryAbandoned.awaitNanos(nanos);
+            }
+            return !closed && batchGeneration == generation;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void runCallback(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind callback failed: {}", e.getMessage());
+        }
+    }
+}
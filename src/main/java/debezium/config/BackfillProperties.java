@@ -0,0 +1,61 @@
+package debezium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "backfill")
+public class BackfillProperties {
+
+    /**
+     * Run fraud detection over the existing rows of public.contributions on startup, reading the table directly.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Name of the checkpoint row, so that independent backfills can be tracked separately.
+     */
+    private String name = "contributions";
+
+    /**
+     * Ignore the checkpoint and start from the first member, also when a previous run completed.
+     */
+    private boolean restart = false;
+
+    /**
+     * Rows fetched per round trip by the server-side cursor.
+     */
+    private int fetchSize = 10_000;
+
+    /**
+     * Rows per batch: each batch is analysed in parallel while the next one is read, then its flagged rows and
+     * the checkpoint are written in one transaction.
+     */
+    private int batchRows = 20_000;
+
+    /**
+     * Number of threads analysing a batch.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum rows read per second, to protect the primary; 0 for no limit.
+     */
+    private int maxRowsPerSecond = 50_000;
+
+    /**
+     * Rules not evaluated by the backfill. Arrears compares the contribution period with today,
+     * which flags every historical row.
+     */
+    private Set<String> disabledRules = new HashSet<>(Set.of("arrears"));
+
+    /**
+     * Shut the application down once the backfill is done.
+     */
+    private boolean exitWhenDone = true;
+}
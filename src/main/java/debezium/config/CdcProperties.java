@@ -0,0 +1,60 @@
+package debezium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "cdc")
+public class CdcProperties {
+
+    /**
+     * Decimal scales per table and field, used for events published with {@code schemas.enable=false}.
+     * Scales learned from schema-bearing events of the same table are used when a field is not configured here;
+     * they are kept in memory only, so after a restart schemaless events rely on this map until such an event arrives.
+     */
+    private Map<String, Map<String, Integer>> fieldScales = new HashMap<>();
+
+    /**
+     * Maximum number of distinct schema fingerprints kept in the schema cache.
+     */
+    private int schemaCacheSize = 64;
+
+    /**
+     * Keep the state stores of both topologies in memory instead of RocksDB. Their state is then restored from the
+     * changelogs on every start, so this suits benchmarks and tests rather than production.
+     */
+    private boolean inMemoryStores = false;
+
+    /**
+     * Wait before a stream thread that failed on the database is replaced. The replacement processes the failed
+     * record again, so an outage holds up the stream rather than dead-lettering healthy records.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(5);
+
+    private Dedup dedup = new Dedup();
+
+    @Getter
+    @Setter
+    public static class Dedup {
+        /**
+         * How long seen record IDs are remembered. Replays older than this are not detected.
+         */
+        private Duration retention = Duration.ofDays(7);
+
+        /**
+         * Number of record IDs per retention period the Bloom filters are sized for.
+         */
+        private long expectedRecords = 1_000_000;
+
+        /**
+         * False positive rate of the Bloom filters; each false positive costs a state store lookup.
+         */
+        private double falsePositiveRate = 0.01;
+    }
+}
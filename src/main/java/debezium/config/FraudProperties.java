@@ -0,0 +1,228 @@
+package debezium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fraud")
+public class FraudProperties {
+
+    /**
+     * Number of previous contributions kept per member, sponsor and type, and averaged by the detector.
+     */
+    private int historySize = 10;
+
+    /**
+     * Contributions with a total above this are flagged.
+     */
+    private BigDecimal maxContribution = new BigDecimal("9999.99");
+
+    /**
+     * New contributions for a period more than this many months in the past are flagged.
+     */
+    private int arrearsMonths = 4;
+
+    /**
+     * New contributions following this many months or more without contributions are flagged.
+     */
+    private int dormantMonths = 4;
+
+    /**
+     * Contributions above this multiple of the member's average over the last {@code historySize} contributions are flagged.
+     */
+    private double memberAverageMultiplier = 2;
+
+    private MemberDeviation memberDeviation = new MemberDeviation();
+
+    private ChangeRatio changeRatio = new ChangeRatio();
+
+    private Rules rules = new Rules();
+
+    private Population population = new Population();
+
+    private Lookups lookups = new Lookups();
+
+    private Batch batch = new Batch();
+
+    private Invoices invoices = new Invoices();
+
+    @Getter
+    @Setter
+    public static class MemberDeviation {
+        /**
+         * Weight of each new contribution in the member's exponentially weighted moving average, between 0 and 1.
+         */
+        private double ewmaAlpha = 0.3;
+
+        /**
+         * Number of earlier contributions below which a member's statistics are not used.
+         */
+        private long minSamples = 6;
+
+        /**
+         * Contributions more than this many standard deviations above the member's mean are flagged.
+         */
+        private double maxZScore = 4;
+
+        /**
+         * Contributions more than this many exponentially weighted standard deviations above the member's moving
+         * average are flagged.
+         */
+        private double maxEwmaScore = 4;
+
+        /**
+         * Smallest standard deviation used, relative to the mean, so that members who always pay the same amount
+         * are not flagged for small raises.
+         */
+        private double minDeviationRatio = 0.1;
+    }
+
+    @Getter
+    @Setter
+    public static class ChangeRatio {
+        /**
+         * Updates multiplying the total by more than this are flagged.
+         */
+        private double maxIncrease = 1.99;
+
+        /**
+         * Updates multiplying the total by less than this are flagged.
+         */
+        private double maxDecrease = 0.51;
+    }
+
+    @Getter
+    @Setter
+    public static class Rules {
+        /**
+         * Once a contribution is flagged, skip the remaining rules costing {@code expensiveCost} or more.
+         */
+        private boolean flagOnce = false;
+
+        private int expensiveCost = 10;
+
+        /**
+         * Names of rules not to run.
+         */
+        private Set<String> disabled = new HashSet<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Population {
+        /**
+         * Also keep statistics per contribution type and sponsor, preferred over the type-wide ones once they have enough samples.
+         */
+        private boolean segmentBySponsor = false;
+
+        /**
+         * Minimum number of contributions in a segment before its statistics are used.
+         */
+        private long minSamples = 100;
+
+        /**
+         * Contributions above this multiple of the segment mean are flagged.
+         */
+        private double averageMultiplier = 9;
+
+        /**
+         * When greater than zero, contributions above {@code percentileMultiplier} times this percentile of the segment
+         * are flagged instead of using the mean.
+         */
+        private double percentile = 0;
+
+        private double percentileMultiplier = 1;
+
+        /**
+         * Relative accuracy of the quantile sketch.
+         */
+        private double relativeAccuracy = 0.01;
+    }
+
+    @Getter
+    @Setter
+    public static class Lookups {
+        /**
+         * Start the database lookups of a contribution's rules concurrently instead of one after another.
+         */
+        private boolean concurrent = true;
+
+        /**
+         * Number of lookup threads, and so of lookup queries in flight across all records; keep it well below the
+         * connection pool size.
+         */
+        private int maxInFlight = 8;
+
+        /**
+         * Time the rules of one contribution wait for their lookups; rules whose data is late are skipped.
+         */
+        private Duration deadline = Duration.ofSeconds(2);
+
+        /**
+         * Time after which the database cancels a lookup query. A lookup abandoned at the deadline keeps its permit
+         * and connection until its query ends, so this bounds how long it does.
+         */
+        private Duration queryTimeout = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /**
+         * Buffer contribution changes and load the histories of all their members with one query per batch,
+         * instead of one query per member seen for the first time.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of buffered changes that triggers a flush.
+         */
+        private int maxRecords = 500;
+
+        /**
+         * Longest time a change waits in the buffer; this is the latency batching adds.
+         */
+        private Duration maxWait = Duration.ofMillis(50);
+    }
+
+    @Getter
+    @Setter
+    public static class Invoices {
+        /**
+         * Length of the hopping windows invoices are aggregated in per owner.
+         */
+        private Duration windowSize = Duration.ofHours(1);
+
+        /**
+         * Interval at which a new window starts; each invoice falls into windowSize / windowAdvance windows.
+         */
+        private Duration windowAdvance = Duration.ofMinutes(15);
+
+        /**
+         * Owners with more invoices than this within one window are flagged.
+         */
+        private int burstCount = 20;
+
+        /**
+         * Owners whose total within one window exceeds this multiple of their usual total for a window are flagged.
+         */
+        private double totalMultiplier = 5;
+
+        /**
+         * Half-life of the owners' invoicing profiles; older invoices weigh half as much per half-life.
+         */
+        private Duration profileHalfLife = Duration.ofDays(7);
+
+        /**
+         * Number of invoices below which an owner's profile is not used.
+         */
+        private long minProfileSamples = 20;
+    }
+}
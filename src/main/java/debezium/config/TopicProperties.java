@@ -0,0 +1,44 @@
+package debezium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "topics")
+public class TopicProperties {
+
+    /**
+     * Number of partitions of the topics the application creates. This caps the number of stream tasks, so it is
+     * the most stream threads that can work in parallel across all instances.
+     */
+    private int partitions = 6;
+
+    /**
+     * Replication factor of the topics the application creates.
+     */
+    private short replicas = 1;
+
+    /**
+     * Partition counts of individual topics, by topic name, overriding {@code partitions}.
+     */
+    private Map<String, Integer> topicPartitions = new HashMap<>();
+
+    /**
+     * Number of partitions of the topic contribution changes are repartitioned through by member and sponsor,
+     * or 0 to use the partition count of the contributions topic.
+     */
+    private int memberPartitions = 0;
+
+    /**
+     * @param topicName The name of the topic.
+     * @return The number of partitions of the topic.
+     */
+    public int partitionsOf(String topicName) {
+        return topicPartitions.getOrDefault(topicName, partitions);
+    }
+}
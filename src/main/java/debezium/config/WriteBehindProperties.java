@@ -0,0 +1,53 @@
+package debezium.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "write-behind")
+public class WriteBehindProperties {
+
+    /**
+     * Buffer processed records and write them in the background with COPY, committing their offsets once written.
+     * When disabled, each poll is written before the listener returns.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Buffered rows of one table that trigger a write.
+     */
+    private int flushRows = 2_000;
+
+    /**
+     * Maximum time a row stays buffered before it is written.
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * Rows of one table buffered or being written at most. The listener waits for a write to finish before adding
+     * beyond this, which stops the consumer from polling.
+     */
+    private int maxBufferedRows = 20_000;
+
+    /**
+     * Wait before the first retry of a failed write, doubled on every further retry.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    /**
+     * Maximum wait between retries. Transient failures are retried until they succeed; once the buffer is full the
+     * listener waits, and if that outlasts {@code max.poll.interval.ms} the consumer leaves the group and the
+     * unacknowledged records are delivered again. Rows refused for their content are dead-lettered instead.
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+    /**
+     * Longest wait for the buffered rows to be written when partitions are revoked. Rows still unwritten then are
+     * dropped unacknowledged and delivered again; keep it well below {@code max.poll.interval.ms}.
+     */
+    private Duration revokeTimeout = Duration.ofSeconds(30);
+}
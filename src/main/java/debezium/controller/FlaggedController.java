@@ -0,0 +1,196 @@
+package debezium.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import debezium.dto.FlaggedFilter;
+import debezium.dto.FlaggedPage;
+import debezium.dto.KeysetCursor;
+import debezium.model.Contribution;
+import debezium.model.Invoice;
+import debezium.repository.FlaggedRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Read endpoints over the flagged contributions and invoices, newest first.
+ * <p>
+ * Pages are keyset paginated: a page returns the cursor of the next one in {@code next}, which is passed back as
+ * {@code after}. The {@code /export} endpoints stream every matching row as NDJSON, one JSON object per line,
+ * straight from a database cursor, so an export of any size holds only one fetch of rows in memory.
+ */
+@RestController
+@RequestMapping("/api/flagged")
+public class FlaggedController {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1_000;
+    private static final int EXPORT_FETCH_SIZE = 1_000;
+    private static final int EXPORT_BUFFER_BYTES = 64 * 1024;
+
+    private final FlaggedRepository repository;
+    //note: written value by value to the response, which must stay open between them
+    private final ObjectWriter writer;
+
+    public FlaggedController(FlaggedRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Reads a page of flagged contributions.
+     *
+     * @param memberId  Only contributions of this member.
+     * @param sponsorId Only contributions of this sponsor.
+     * @param period    Only contributions of this period, as {@code yyyy-MM}.
+     * @param reason    Only contributions whose reason contains this text, ignoring case.
+     * @param after     The {@code next} cursor of the previous page, none for the first page.
+     * @param limit     The maximum number of contributions, at most 1000.
+     * @return The contributions and the cursor of the next page.
+     */
+    @GetMapping("/contributions")
+    public FlaggedPage<Contribution> contributions(@RequestParam(required = false) Long memberId,
+                                                   @RequestParam(required = false) Long sponsorId,
+                                                   @RequestParam(required = false) String period,
+                                                   @RequestParam(required = false) String reason,
+                                                   @RequestParam(required = false) String after,
+                                                   @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        FlaggedFilter filter = new FlaggedFilter(memberId, sponsorId, period(period), null, reason);
+        int size = limit(limit);
+        List<Contribution> rows = repository.findContributions(filter, cursor(after), size + 1);
+        return page(rows, size, Contribution::getCreatedAt, Contribution::getId);
+    }
+
+    /**
+     * Streams all matching flagged contributions as NDJSON.
+     *
+     * @param memberId  Only contributions of this member.
+     * @param sponsorId Only contributions of this sponsor.
+     * @param period    Only contributions of this period, as {@code yyyy-MM}.
+     * @param reason    Only contributions whose reason contains this text, ignoring case.
+     * @param after     Only contributions after this cursor, none for all.
+     * @return The streamed contributions, newest first.
+     */
+    @GetMapping("/contributions/export")
+    public ResponseEntity<StreamingResponseBody> exportContributions(@RequestParam(required = false) Long memberId,
+                                                                     @RequestParam(required = false) Long sponsorId,
+                                                                     @RequestParam(required = false) String period,
+                                                                     @RequestParam(required = false) String reason,
+                                                                     @RequestParam(required = false) String after) {
+        FlaggedFilter filter = new FlaggedFilter(memberId, sponsorId, period(period), null, reason);
+        KeysetCursor cursor = cursor(after);
+        return ndjson(out -> repository.streamContributions(filter, cursor, EXPORT_FETCH_SIZE, co -> write(out, co)));
+    }
+
+    /**
+     * Reads a page of flagged invoices.
+     *
+     * @param customerId Only invoices of this customer.
+     * @param reason     Only invoices whose reason contains this text, ignoring case.
+     * @param after      The {@code next} cursor of the previous page, none for the first page.
+     * @param limit      The maximum number of invoices, at most 1000.
+     * @return The invoices and the cursor of the next page.
+     */
+    @GetMapping("/invoices")
+    public FlaggedPage<Invoice> invoices(@RequestParam(required = false) Long customerId,
+                                         @RequestParam(required = false) String reason,
+                                         @RequestParam(required = false) String after,
+                                         @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        FlaggedFilter filter = new FlaggedFilter(null, null, null, customerId, reason);
+        int size = limit(limit);
+        List<Invoice> rows = repository.findInvoices(filter, cursor(after), size + 1);
+        return page(rows, size, Invoice::getCreatedAt, Invoice::getId);
+    }
+
+    /**
+     * Streams all matching flagged invoices as NDJSON.
+     *
+     * @param customerId Only invoices of this customer.
+     * @param reason     Only invoices whose reason contains this text, ignoring case.
+     * @param after      Only invoices after this cursor, none for all.
+     * @return The streamed invoices, newest first.
+     */
+    @GetMapping("/invoices/export")
+    public ResponseEntity<StreamingResponseBody> exportInvoices(@RequestParam(required = false) Long customerId,
+                                                                @RequestParam(required = false) String reason,
+                                                                @RequestParam(required = false) String after) {
+        FlaggedFilter filter = new FlaggedFilter(null, null, null, customerId, reason);
+        KeysetCursor cursor = cursor(after);
+        return ndjson(out -> repository.streamInvoices(filter, cursor, EXPORT_FETCH_SIZE, invoice -> write(out, invoice)));
+    }
+
+    /**
+     * Builds a page from one row more than its size, whose presence tells that there is a next page.
+     */
+    private static <T> FlaggedPage<T> page(List<T> rows, int size, Function<T, LocalDateTime> createdAt, Function<T, Long> id) {
+        if (rows.size() <= size) {
+            return new FlaggedPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        T last = items.get(size - 1);
+        return new FlaggedPage<>(items, new KeysetCursor(createdAt.apply(last), id.apply(last)).encode());
+    }
+
+    private static ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> {
+                    BufferedOutputStream buffered = new BufferedOutputStream(out, EXPORT_BUFFER_BYTES);
+                    body.writeTo(buffered);
+                    buffered.flush();
+                });
+    }
+
+    private void write(OutputStream out, Object row) {
+        try {
+            writer.writeValue(out, row);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int limit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static Integer period(String period) {
+        if (period == null || period.isBlank()) {
+            return null;
+        }
+        try {
+            YearMonth yearMonth = YearMonth.parse(period);
+            //note: the value of UtilService.toPeriod, months since year 0 with January as 0
+            return yearMonth.getYear() * 12 + yearMonth.getMonthValue() - 1;
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "period must be yyyy-MM: " + period);
+        }
+    }
+
+    private static KeysetCursor cursor(String after) {
+        try {
+            return KeysetCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package debezium.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import debezium.enums.Operation;
+
+import java.util.Map;
+
+/**
+ * A Debezium change event decoded in a single pass over the raw JSON envelope.
+ *
+ * @param op          The operation code from {@code payload.op}.
+ * @param before      The row before the change, or null when there is no before-image.
+ * @param after       The row after the change, or null for deletes.
+ * @param source      The {@code payload.source} metadata block.
+ * @param tsMs        The {@code payload.ts_ms} timestamp.
+ * @param fieldScales Decimal scales of the row fields, keyed by field name.
+ * @param <T>         The row type.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChangeEvent<T>(
+        Operation op,
+        T before,
+        T after,
+        SourceInfo source,
+        long tsMs,
+        Map<String, Integer> fieldScales
+) {
+
+    /**
+     * Inserts and snapshot reads, plus updates without a before-image (REPLICA IDENTITY DEFAULT),
+     * which cannot be compared against a previous state and are handled like new records.
+     */
+    public boolean isNewRecord() {
+        if (after == null) return false;
+        return op == Operation.CREATE || op == Operation.READ || (op == Operation.UPDATE && before == null);
+    }
+
+    /**
+     * Updates that carry both the before and after images.
+     */
+    public boolean isUpdate() {
+        return op == Operation.UPDATE && before != null && after != null;
+    }
+}
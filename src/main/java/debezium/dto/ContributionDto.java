@@ -2,10 +2,13 @@ package debezium.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import debezium.model.Contribution;
+import debezium.service.FixedPoint;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 import static debezium.service.UtilService.decodeDecimal;
+import static debezium.service.UtilService.toPeriod;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record ContributionDto(
@@ -21,19 +24,54 @@ public record ContributionDto(
         String ssno,
         String status
 ) {
+    /**
+     * Builds a contribution, decoding the amounts with the scales of the change event's schema.
+     *
+     * @param fieldScales Decimal scales of the row fields, keyed by field name.
+     * @return The contribution.
+     * @throws IllegalArgumentException if the scale of a present amount is unknown or the month is not valid.
+     */
     public Contribution toContribution(Map<String, Integer> fieldScales) {
         Contribution contribution = new Contribution();
         contribution.setRecordId(id == 0 ? null : id); // Set ID if it's not zero
         contribution.setYear(year);
         contribution.setMemberId(member_id);
         contribution.setSponsorId(sponsor_id);
-        contribution.setEe(decodeDecimal(ee, fieldScales.get("ee")));
-        contribution.setEr(decodeDecimal(er, fieldScales.get("er")));
-        contribution.setTotal(decodeDecimal(tot, fieldScales.get("tot")));
+        //note: scales are only needed for the amounts present; FixedPoint.SCALE keeps the zero of a missing one exact
+        int eeScale = ee == null ? FixedPoint.SCALE : scale(fieldScales, "ee");
+        int erScale = er == null ? FixedPoint.SCALE : scale(fieldScales, "er");
+        long eeUnscaled = ee == null ? 0 : FixedPoint.decodeUnscaled(ee);
+        long erUnscaled = er == null ? 0 : FixedPoint.decodeUnscaled(er);
+        contribution.setEe(amount(ee, eeUnscaled, eeScale));
+        contribution.setEr(amount(er, erUnscaled, erScale));
+        contribution.setTotal(tot == null ? null : amount(tot, FixedPoint.decodeUnscaled(tot), scale(fieldScales, "tot")));
+        contribution.setDecodedTotal(FixedPoint.add(
+                FixedPoint.rescale(eeUnscaled, eeScale),
+                FixedPoint.rescale(erUnscaled, erScale)));
         contribution.setType(type);
         contribution.setMonth(month);
+        contribution.setPeriod(month == null ? null : toPeriod(year, month));
         contribution.setSsno(ssno);
         contribution.setStatus(status);
         return contribution;
     }
+
+    //note: fails with a clear message instead of a NullPointerException when unboxing
+    private static int scale(Map<String, Integer> fieldScales, String field) {
+        Integer scale = fieldScales.get(field);
+        if (scale == null) {
+            throw new IllegalArgumentException("No decimal scale known for contributions." + field);
+        }
+        return scale;
+    }
+
+    /**
+     * Builds a decoded amount from its unscaled long, only decoding it as a BigInteger when it does not fit.
+     */
+    private static BigDecimal amount(String base64, long unscaled, int scale) {
+        if (base64 == null) {
+            return null;
+        }
+        return unscaled == FixedPoint.NONE ? decodeDecimal(base64, scale) : BigDecimal.valueOf(unscaled, scale);
+    }
 }
@@ -0,0 +1,249 @@
+package debezium.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import debezium.model.Contribution;
+import debezium.service.FixedPoint;
+import debezium.stats.MemberStats;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent contributions of one member for one sponsor and contribution type,
+ * newest period first, and the running statistics of all of them. This is the value of the contribution history
+ * state store.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ContributionHistory {
+
+    private List<Entry> entries = new ArrayList<>();
+
+    //note: null until the first contribution is recorded with statistics, e.g. for histories loaded from the database
+    private MemberStats stats;
+
+    //note: set for histories whose database load failed; they serve the record at hand but are never stored
+    @JsonIgnore
+    private boolean unseeded;
+
+    /**
+     * One past contribution.
+     *
+     * @param recordId The ID of the contribution in public.contributions.
+     * @param year     The contribution year.
+     * @param month    The contribution month.
+     * @param period   The contribution period as months since year 0, see {@link debezium.service.UtilService#toPeriod}.
+     * @param total    The sum of the employee and employer contributions in {@link FixedPoint} units.
+     */
+    public record Entry(long recordId, int year, String month, int period, long total) {
+    }
+
+    /**
+     * Returns an empty history standing in for one that could not be loaded from the database.
+     * It is not written to the state store, so that the next record of the key loads the history again.
+     *
+     * @return An empty, unseeded history.
+     */
+    public static ContributionHistory unseeded() {
+        ContributionHistory history = new ContributionHistory();
+        history.setUnseeded(true);
+        return history;
+    }
+
+    /**
+     * Builds the state store key of a contribution: member, sponsor and type.
+     *
+     * @param contribution The contribution.
+     * @return The history key of the contribution.
+     */
+    public static String key(Contribution contribution) {
+        return key(contribution.getMemberId(), contribution.getSponsorId(), contribution.getType());
+    }
+
+    /**
+     * Builds the state store key of a member, sponsor and contribution type.
+     *
+     * @param memberId  The ID of the member.
+     * @param sponsorId The ID of the sponsor.
+     * @param type      The contribution type.
+     * @return The history key.
+     */
+    public static String key(Long memberId, Long sponsorId, String type) {
+        return memberId + "|" + sponsorId + "|" + type;
+    }
+
+    /**
+     * Builds a history entry from a contribution.
+     *
+     * @param contribution The contribution.
+     * @return The history entry of the contribution.
+     */
+    public static Entry entryOf(Contribution contribution) {
+        long total = contribution.fixedTotal();
+        if (total == FixedPoint.NONE) {
+            BigDecimal ee = contribution.getEe() == null ? BigDecimal.ZERO : contribution.getEe();
+            total = FixedPoint.ofSaturated(contribution.getEr() == null ? ee : ee.add(contribution.getEr()));
+        }
+        return new Entry(
+                contribution.getRecordId() == null ? 0 : contribution.getRecordId(),
+                contribution.getYear(),
+                contribution.getMonth(),
+                contribution.period(),
+                total
+        );
+    }
+
+    /**
+     * Returns the latest contribution with a period before the given one.
+     *
+     * @param period The period of the contribution being checked.
+     * @return The previous contribution, or null if there is none.
+     */
+    public Entry previousBefore(int period) {
+        for (Entry entry : entries) {
+            if (entry.period() < period) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Averages the totals of the last contributions with a period before the given one.
+     *
+     * @param period         The period of the contribution being checked.
+     * @param numberOfMonths The maximum number of contributions to average.
+     * @return The average total in {@link FixedPoint} units, or {@link FixedPoint#NONE} if there are no such
+     * contributions or they sum to zero.
+     */
+    public long averageBefore(int period, int numberOfMonths) {
+        long sum = 0;
+        int count = 0;
+        for (Entry entry : entries) {
+            if (count == numberOfMonths) break;
+            if (entry.period() < period) {
+                long next = FixedPoint.add(sum, entry.total());
+                if (next == FixedPoint.NONE) {
+                    return averageExactBefore(period, numberOfMonths);
+                }
+                sum = next;
+                count++;
+            }
+        }
+        if (count == 0 || sum == 0) {
+            return FixedPoint.NONE;
+        }
+        long average = sum / count;
+        long remainder = sum % count;
+        //note: round half up, away from zero
+        if (Math.abs(remainder) * 2 >= count) {
+            average += Long.signum(sum);
+        }
+        return average;
+    }
+
+    /**
+     * Overflow fallback of {@link #averageBefore(int, int)}.
+     */
+    private long averageExactBefore(int period, int numberOfMonths) {
+        BigDecimal sum = BigDecimal.ZERO;
+        int count = 0;
+        for (Entry entry : entries) {
+            if (count == numberOfMonths) break;
+            if (entry.period() < period) {
+                sum = sum.add(FixedPoint.toBigDecimal(entry.total()));
+                count++;
+            }
+        }
+        return FixedPoint.ofSaturated(sum.divide(BigDecimal.valueOf(count), RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Adds or replaces a contribution, keeping entries ordered newest period first and at most maxEntries long.
+     *
+     * @param entry      The contribution to record.
+     * @param maxEntries The maximum number of entries to keep.
+     */
+    public void record(Entry entry, int maxEntries) {
+        entries.removeIf(e -> e.recordId() == entry.recordId());
+        int index = 0;
+        while (index < entries.size() && entries.get(index).period() >= entry.period()) {
+            index++;
+        }
+        entries.add(index, entry);
+        while (entries.size() > maxEntries) {
+            entries.remove(entries.size() - 1);
+        }
+    }
+
+    /**
+     * Adds or replaces a contribution like {@link #record(Entry, int)}, and applies it to the running statistics.
+     * <p>
+     * Statistics not recorded yet are first computed from the kept entries other than this contribution, which a
+     * history loaded from the database may already hold. An update of a contribution no longer kept leaves the
+     * statistics as they are, since the amount it replaces is not known any more.
+     *
+     * @param entry      The contribution to record.
+     * @param maxEntries The maximum number of entries to keep.
+     * @param ewmaAlpha  The weight of the contribution in the EWMA of the statistics.
+     * @param update     Whether the contribution is an update of an earlier one rather than a new record.
+     */
+    public void record(Entry entry, int maxEntries, double ewmaAlpha, boolean update) {
+        if (stats == null) {
+            stats = seed(Integer.MAX_VALUE, entry.recordId(), ewmaAlpha);
+            stats.add(FixedPoint.toDouble(entry.total()), entry.period(), ewmaAlpha);
+        } else {
+            Entry amended = null;
+            for (Entry e : entries) {
+                if (e.recordId() == entry.recordId()) {
+                    amended = e;
+                    break;
+                }
+            }
+            if (amended != null) {
+                stats.replace(FixedPoint.toDouble(amended.total()), FixedPoint.toDouble(entry.total()), ewmaAlpha);
+            } else if (!update) {
+                stats.add(FixedPoint.toDouble(entry.total()), entry.period(), ewmaAlpha);
+            }
+        }
+        record(entry, maxEntries);
+    }
+
+    /**
+     * Returns the running statistics of the member's contributions, or, if none were recorded yet, computes them
+     * from the kept entries before the given contribution.
+     *
+     * @param ewmaAlpha The weight of each contribution in the EWMA when computing the statistics.
+     * @param period    The period of the contribution being checked.
+     * @param recordId  The ID of the contribution being checked, left out of computed statistics.
+     * @return The statistics; changing them changes this history only if it had statistics already.
+     */
+    public MemberStats runningStats(double ewmaAlpha, int period, long recordId) {
+        return stats != null ? stats : seed(period, recordId, ewmaAlpha);
+    }
+
+    /**
+     * Computes statistics from the kept entries before a period, oldest first, leaving out one record.
+     */
+    private MemberStats seed(int period, long recordId, double ewmaAlpha) {
+        MemberStats seeded = new MemberStats();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            if (entry.period() < period && entry.recordId() != recordId) {
+                seeded.add(FixedPoint.toDouble(entry.total()), entry.period(), ewmaAlpha);
+            }
+        }
+        return seeded;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
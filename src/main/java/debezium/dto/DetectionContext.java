@@ -0,0 +1,21 @@
+package debezium.dto;
+
+import debezium.stats.PopulationStats;
+
+import java.util.function.Supplier;
+
+/**
+ * Locally maintained data the fraud detector reads instead of querying the database.
+ *
+ * @param history         The member's contribution history for the sponsor and type, or null to load it with the
+ *                        history loader or query the database.
+ * @param populationStats The statistics of the contribution's population segment, or null to query the database.
+ * @param historyLoader   Loads the history when it is not kept locally yet, started as a concurrent lookup, or null.
+ */
+public record DetectionContext(ContributionHistory history, PopulationStats populationStats,
+                               Supplier<ContributionHistory> historyLoader) {
+
+    public DetectionContext(ContributionHistory history, PopulationStats populationStats) {
+        this(history, populationStats, null);
+    }
+}
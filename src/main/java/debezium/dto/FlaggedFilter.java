@@ -0,0 +1,15 @@
+package debezium.dto;
+
+/**
+ * Restricts the flagged rows read by the REST API. Null fields do not restrict; filters that do not apply to a
+ * table, such as the member for invoices, are ignored there.
+ *
+ * @param memberId   Only contributions of this member.
+ * @param sponsorId  Only contributions of this sponsor.
+ * @param period     Only contributions of this period, as months since year 0, see
+ *                   {@link debezium.service.UtilService#toPeriod}.
+ * @param customerId Only invoices of this customer.
+ * @param reason     Only rows whose reason contains this text, ignoring case.
+ */
+public record FlaggedFilter(Long memberId, Long sponsorId, Integer period, Long customerId, String reason) {
+}
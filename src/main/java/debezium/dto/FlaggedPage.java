@@ -0,0 +1,13 @@
+package debezium.dto;
+
+import java.util.List;
+
+/**
+ * One page of flagged rows.
+ *
+ * @param items The rows, newest first.
+ * @param next  The cursor of the next page, or null if this is the last page.
+ * @param <T>   The row type.
+ */
+public record FlaggedPage<T>(List<T> items, String next) {
+}
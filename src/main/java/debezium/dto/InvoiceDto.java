@@ -0,0 +1,42 @@
+package debezium.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import debezium.model.Invoice;
+import debezium.service.FixedPoint;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static debezium.service.UtilService.decodeDecimal;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record InvoiceDto(
+        long id,
+        Long customer_id,
+        String amount
+) {
+    /**
+     * Builds an invoice, decoding the amount with the scale of the change event's schema.
+     *
+     * @param fieldScales Decimal scales of the row fields, keyed by field name.
+     * @return The invoice.
+     * @throws IllegalArgumentException if the scale of the amount is unknown.
+     */
+    public Invoice toInvoice(Map<String, Integer> fieldScales) {
+        Invoice invoice = new Invoice();
+        invoice.setRecordId(id == 0 ? null : id); // Set ID if it's not zero
+        invoice.setCustomerId(customer_id);
+        if (amount != null) {
+            Integer scale = fieldScales.get("amount");
+            if (scale == null) {
+                throw new IllegalArgumentException("No decimal scale known for invoices.amount");
+            }
+            long unscaled = FixedPoint.decodeUnscaled(amount);
+            BigDecimal decoded = unscaled == FixedPoint.NONE ? decodeDecimal(amount, scale) : BigDecimal.valueOf(unscaled, scale);
+            invoice.setTotalAmount(decoded.doubleValue());
+            long fixed = FixedPoint.rescale(unscaled, scale);
+            invoice.setDecodedAmount(fixed != FixedPoint.NONE ? fixed : FixedPoint.ofSaturated(decoded));
+        }
+        return invoice;
+    }
+}
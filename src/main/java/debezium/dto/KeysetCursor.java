@@ -0,0 +1,46 @@
+package debezium.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * The position after the last row of a page of flagged rows, ordered by creation time and ID, newest first.
+ * Clients pass it back as an opaque string to read the next page.
+ *
+ * @param createdAt The creation time of the last row.
+ * @param id        The ID of the last row.
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id) {
+
+    /**
+     * @return The cursor as a URL-safe string.
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a cursor from its string.
+     *
+     * @param value The string returned by {@link #encode}, or null.
+     * @return The cursor, or null if the value is null or blank.
+     * @throws IllegalArgumentException if the value is not a cursor.
+     */
+    public static KeysetCursor decode(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int comma = decoded.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("Not a cursor: " + value);
+            }
+            return new KeysetCursor(LocalDateTime.parse(decoded.substring(0, comma)), Long.parseLong(decoded.substring(comma + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a cursor: " + value, e);
+        }
+    }
+}
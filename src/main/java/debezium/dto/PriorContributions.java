@@ -0,0 +1,25 @@
+package debezium.dto;
+
+import debezium.model.Contribution;
+
+import java.math.BigDecimal;
+
+/**
+ * The contributions of a member before a given one, for the same sponsor and contribution type,
+ * as read by one history lookup.
+ *
+ * @param previous     The latest contribution before the given one, or null if there is none.
+ * @param averageTotal The average total of the last {@code months} contributions, or null if there are none
+ *                     or they sum to zero.
+ * @param months       The maximum number of contributions averaged.
+ */
+public record PriorContributions(Contribution previous, BigDecimal averageTotal, int months) {
+
+    /**
+     * @param months The maximum number of contributions averaged.
+     * @return The lookup result of a contribution with no earlier contributions.
+     */
+    public static PriorContributions none(int months) {
+        return new PriorContributions(null, null, months);
+    }
+}
@@ -0,0 +1,18 @@
+package debezium.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SourceInfo(
+        String version,
+        String connector,
+        String name,
+        Long ts_ms,
+        String snapshot,
+        String db,
+        String schema,
+        String table,
+        Long txId,
+        Long lsn
+) {
+}
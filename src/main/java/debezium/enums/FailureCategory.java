@@ -0,0 +1,115 @@
+package debezium.enums;
+
+import com.fasterxml.jackson.core.JacksonException;
+import jakarta.persistence.PersistenceException;
+import lombok.Getter;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.DateTimeException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The class of a record failure, published as the {@code dlt.error} header of dead letters.
+ */
+@Getter
+public enum FailureCategory {
+    DECODE("decode"),                 // the message is not valid JSON or does not bind to the row type
+    INVALID_VALUE("invalid-value"),   // a field is missing or cannot be interpreted, e.g. an unknown decimal scale
+    DATABASE("database"),             // a lookup or write failed
+    SERIALIZATION("serialization"),   // a record could not be (de)serialized by a serde
+    RECORD_TOO_LARGE("record-too-large"),
+    UNKNOWN("unknown");
+
+    private final String tag;
+
+    FailureCategory(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Classifies a failure by its exception, looking through wrapping exceptions.
+     *
+     * @param error The failure.
+     * @return The failure category.
+     */
+    public static FailureCategory of(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof JacksonException || cause instanceof IOException) {
+            return DECODE;
+        }
+        if (cause instanceof IllegalArgumentException || cause instanceof NullPointerException
+                || cause instanceof ArithmeticException || cause instanceof DateTimeException) {
+            return INVALID_VALUE;
+        }
+        if (cause instanceof DataAccessException || cause instanceof SQLException
+                || cause instanceof PersistenceException) {
+            return DATABASE;
+        }
+        if (cause instanceof SerializationException) {
+            return SERIALIZATION;
+        }
+        if (cause instanceof RecordTooLargeException) {
+            return RECORD_TOO_LARGE;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Tells whether a failure may go away when retried, as when the database is unreachable, shutting down,
+     * overloaded, or broke off a transaction over a deadlock, serialization conflict, lock or statement timeout.
+     * Any other failure, such as a constraint violation or a value that does not fit its column, is taken to fail
+     * again the same way.
+     *
+     * @param error The failure.
+     * @return true if the failure is transient.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && isTransientSqlState(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //note: SQLSTATE classes 08 connection, 40 transaction rollback, 53 insufficient resources, 57 operator
+    // intervention (incl. query_canceled on statement timeout), 58 system error, and 55P03 lock_not_available
+    private static boolean isTransientSqlState(String state) {
+        if (state == null || state.length() < 2) {
+            return false;
+        }
+        return switch (state.substring(0, 2)) {
+            case "08", "40", "53", "57", "58" -> true;
+            default -> state.equals("55P03");
+        };
+    }
+
+    /**
+     * Strips the exceptions that only wrap a failure to pass it on, such as {@link UncheckedIOException}.
+     *
+     * @param error The failure.
+     * @return The wrapped failure, or the failure itself.
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof UncheckedIOException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -5,11 +5,19 @@ import lombok.Getter;
 @Getter
 public enum KTopic {
     PROCESSED_INVOICES_TOPIC("processed_invoices_topic"),
-    PROCESSED_CONTRIBUTIONS_TOPIC("processed_contributions_topic");
+    PROCESSED_CONTRIBUTIONS_TOPIC("processed_contributions_topic"),
+    CONTRIBUTION_STATS_TOPIC("contribution_stats_topic", true),
+    DEAD_LETTER_TOPIC("dead_letter_topic");
 
     private final String topicName;
+    private final boolean compacted;
     KTopic(String topicName) {
+        this(topicName, false);
+    }
+
+    KTopic(String topicName, boolean compacted) {
         this.topicName = topicName;
+        this.compacted = compacted;
     }
 
     public static KTopic fromTopicName(String topic) {
@@ -0,0 +1,34 @@
+package debezium.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum Operation {
+    CREATE("c"),
+    UPDATE("u"),
+    DELETE("d"),
+    READ("r"),
+    TRUNCATE("t"),
+    MESSAGE("m");
+
+    private final String code;
+
+    Operation(String code) {
+        this.code = code;
+    }
+
+    public static Operation fromCode(String code) {
+        if (code == null || code.length() != 1) {
+            return null;
+        }
+        return switch (code.charAt(0)) {
+            case 'c' -> CREATE;
+            case 'u' -> UPDATE;
+            case 'd' -> DELETE;
+            case 'r' -> READ;
+            case 't' -> TRUNCATE;
+            case 'm' -> MESSAGE;
+            default -> null;
+        };
+    }
+}
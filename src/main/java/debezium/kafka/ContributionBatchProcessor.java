@@ -0,0 +1,178 @@
+package debezium.kafka;
+
+import debezium.config.FraudProperties;
+import debezium.dto.ChangeEvent;
+import debezium.dto.ContributionDto;
+import debezium.dto.ContributionHistory;
+import debezium.model.Contribution;
+import debezium.service.ContributionService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.processor.api.RecordMetadata;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs fraud detection on buffered batches of contribution change events.
+ * <p>
+ * Changes are buffered until {@code maxRecords} are waiting or {@code maxWait} has passed. A flush loads the
+ * histories of all members in the batch that the history store does not know yet with one query, then runs
+ * {@link ContributionFraudProcessor}'s detection on each change in arrival order and forwards the flagged ones,
+ * so the partition's order is kept. A change that fails detection is dead-lettered on its own, without holding
+ * up the rest of the batch, unless the database failed: the batch then fails as a whole and is processed again.
+ * <p>
+ * The buffer is mirrored in a changelogged store, so that buffered changes whose offsets were already committed
+ * are restored and flushed after a restart instead of being lost.
+ */
+@Slf4j
+public class ContributionBatchProcessor implements Processor<String, ChangeEvent<ContributionDto>, String, Contribution> {
+    public static final String BATCH_STORE = "contribution-batch-store";
+    private static final String STAGE = "contribution-batch";
+
+    private final ContributionFraudProcessor detection;
+    private final ContributionService contributionService;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final FraudProperties.Batch batch;
+    private final int historySize;
+    private final List<KeyValue<Long, BufferedEvent>> buffer = new ArrayList<>();
+
+    private ProcessorContext<String, Contribution> context;
+    private KeyValueStore<Long, BufferedEvent> batchStore;
+    private long sequence;
+
+    /**
+     * A buffered change event with the key, timestamp and position of its record.
+     *
+     * @param key       The record key.
+     * @param timestamp The record timestamp.
+     * @param event     The decoded change event.
+     * @param topic     The topic of the record, or null if unknown.
+     * @param partition The partition of the record, or -1 if unknown.
+     * @param offset    The offset of the record, or -1 if unknown.
+     */
+    public record BufferedEvent(String key, long timestamp, ChangeEvent<ContributionDto> event,
+                                String topic, int partition, long offset) {
+    }
+
+    public ContributionBatchProcessor(ContributionFraudProcessor detection, ContributionService contributionService,
+                                      DeadLetterPublisher deadLetterPublisher, FraudProperties fraudProperties) {
+        this.detection = detection;
+        this.contributionService = contributionService;
+        this.deadLetterPublisher = deadLetterPublisher;
+        this.batch = fraudProperties.getBatch();
+        this.historySize = fraudProperties.getHistorySize();
+    }
+
+    /**
+     * Builds the store mirroring the buffer.
+     *
+     * @param eventSerde The serde of buffered events.
+     * @return The store builder.
+     */
+    public static StoreBuilder<KeyValueStore<Long, BufferedEvent>> storeBuilder(Serde<BufferedEvent> eventSerde) {
+        return Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(BATCH_STORE), Serdes.Long(), eventSerde);
+    }
+
+    @Override
+    public void init(ProcessorContext<String, Contribution> context) {
+        this.context = context;
+        this.batchStore = context.getStateStore(BATCH_STORE);
+        detection.init(context.getStateStore(ContributionFraudProcessor.HISTORY_STORE),
+                context.getStateStore(ContributionFraudProcessor.GLOBAL_STATS_STORE));
+
+        // pick up changes buffered before a restart; keys are ascending, so this is arrival order
+        try (KeyValueIterator<Long, BufferedEvent> all = batchStore.all()) {
+            while (all.hasNext()) {
+                KeyValue<Long, BufferedEvent> buffered = all.next();
+                buffer.add(buffered);
+                sequence = buffered.key + 1;
+            }
+        }
+        if (!buffer.isEmpty()) {
+            log.info("Restored {} buffered contribution changes", buffer.size());
+        }
+        context.schedule(batch.getMaxWait(), PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public void process(Record<String, ChangeEvent<ContributionDto>> record) {
+        RecordMetadata metadata = context.recordMetadata().orElse(null);
+        KeyValue<Long, BufferedEvent> buffered = KeyValue.pair(sequence++, metadata == null
+                ? new BufferedEvent(record.key(), record.timestamp(), record.value(), null, -1, -1)
+                : new BufferedEvent(record.key(), record.timestamp(), record.value(), metadata.topic(), metadata.partition(), metadata.offset()));
+        batchStore.put(buffered.key, buffered.value);
+        buffer.add(buffered);
+        if (buffer.size() >= batch.getMaxRecords()) {
+            flush();
+        }
+    }
+
+    /**
+     * Loads the missing histories of the buffered changes with one query, then detects and forwards them in order.
+     */
+    private void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        Map<String, ContributionHistory> loadedHistories = loadMissingHistories();
+        for (KeyValue<Long, BufferedEvent> buffered : buffer) {
+            BufferedEvent bufferedEvent = buffered.value;
+            Contribution contribution;
+            try {
+                contribution = detection.detect(bufferedEvent.event(), loadedHistories);
+            } catch (RuntimeException e) {
+                if (DeadLetterExceptionHandler.isRetried(e)) {
+                    throw e; // the whole batch is processed again, as the transaction of its forwards is aborted
+                }
+                deadLetterPublisher.publish(STAGE, bufferedEvent.topic(), bufferedEvent.partition(), bufferedEvent.offset(),
+                        bufferedEvent.key(), bufferedEvent.event(), e);
+                contribution = null;
+            }
+            if (contribution != null) {
+                context.forward(new Record<>(bufferedEvent.key(), contribution, bufferedEvent.timestamp()));
+            }
+            batchStore.delete(buffered.key);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Loads the histories of the members, sponsors and types in the buffer that the history store does not know.
+     *
+     * @return The loaded histories by {@link ContributionHistory#key}.
+     */
+    private Map<String, ContributionHistory> loadMissingHistories() {
+        KeyValueStore<String, ContributionHistory> historyStore = context.getStateStore(ContributionFraudProcessor.HISTORY_STORE);
+        Set<String> keys = new HashSet<>();
+        List<Long> memberIds = new ArrayList<>();
+        List<Long> sponsorIds = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (KeyValue<Long, BufferedEvent> buffered : buffer) {
+            ContributionDto after = buffered.value.event().after();
+            String key = ContributionHistory.key(after.member_id(), after.sponsor_id(), after.type());
+            if (keys.add(key) && historyStore.get(key) == null) {
+                memberIds.add(after.member_id());
+                sponsorIds.add(after.sponsor_id());
+                types.add(after.type());
+            }
+        }
+        if (memberIds.isEmpty()) {
+            return Map.of();
+        }
+        return contributionService.loadContributionHistories(memberIds, sponsorIds, types, historySize);
+    }
+}
@@ -0,0 +1,247 @@
+package debezium.kafka;
+
+import debezium.component.ContributionFraudDetector;
+import debezium.component.PipelineMetrics;
+import debezium.config.FraudProperties;
+import debezium.dto.ChangeEvent;
+import debezium.dto.ContributionDto;
+import debezium.dto.ContributionHistory;
+import debezium.dto.DetectionContext;
+import debezium.enums.DebeziumTopic;
+import debezium.model.Contribution;
+import debezium.service.ContributionService;
+import debezium.stats.PopulationStats;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs fraud detection on contribution change events, reading each member's past contributions
+ * from the contribution history state store and recording every processed contribution in it.
+ * A history not in the store yet is loaded from the database as one of the rules' concurrent lookups.
+ * Population statistics are read from the global store fed by the contribution statistics topic.
+ * Only flagged contributions are forwarded.
+ * <p>
+ * {@link ContributionBatchProcessor} runs the same detection on buffered batches of changes.
+ */
+public class ContributionFraudProcessor implements FixedKeyProcessor<String, ChangeEvent<ContributionDto>, Contribution> {
+    public static final String HISTORY_STORE = "contribution-history-store";
+    public static final String STATS_STORE = "contribution-stats-store";
+    public static final String GLOBAL_STATS_STORE = "contribution-stats-global-store";
+
+    private final ContributionFraudDetector contributionFraudDetector;
+    private final ContributionService contributionService;
+    private final FraudProperties fraudProperties;
+    private final int historySize;
+    private final PipelineMetrics.StageMeters newMeters;
+    private final PipelineMetrics.StageMeters updateMeters;
+
+    private FixedKeyProcessorContext<String, Contribution> context;
+    private KeyValueStore<String, ContributionHistory> historyStore;
+    private TimestampedKeyValueStore<String, PopulationStats> statsStore;
+
+    public ContributionFraudProcessor(ContributionFraudDetector contributionFraudDetector, ContributionService contributionService,
+                                      FraudProperties fraudProperties, PipelineMetrics pipelineMetrics) {
+        this.contributionFraudDetector = contributionFraudDetector;
+        this.contributionService = contributionService;
+        this.fraudProperties = fraudProperties;
+        this.historySize = fraudProperties.getHistorySize();
+        String topic = DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName();
+        this.newMeters = pipelineMetrics.detection(topic, PipelineMetrics.Branch.NEW);
+        this.updateMeters = pipelineMetrics.detection(topic, PipelineMetrics.Branch.UPDATE);
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Contribution> context) {
+        this.context = context;
+        init(context.getStateStore(HISTORY_STORE), context.getStateStore(GLOBAL_STATS_STORE));
+    }
+
+    /**
+     * Binds the detection to the state stores, for processors that run it on their own records.
+     *
+     * @param historyStore The contribution history store.
+     * @param statsStore   The global population statistics store.
+     */
+    void init(KeyValueStore<String, ContributionHistory> historyStore, TimestampedKeyValueStore<String, PopulationStats> statsStore) {
+        this.historyStore = historyStore;
+        this.statsStore = statsStore;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, ChangeEvent<ContributionDto>> record) {
+        Contribution contribution = detect(record.value(), Map.of());
+        if (contribution != null) {
+            context.forward(record.withValue(contribution));
+        }
+    }
+
+    /**
+     * Runs fraud detection on one change event and records the contribution in its history.
+     *
+     * @param event            The decoded change event of the contribution.
+     * @param loadedHistories  Histories already loaded from the database, by {@link ContributionHistory#key},
+     *                         used for keys the history store does not know yet.
+     * @return The flagged contribution, or null if it is clean.
+     * @throws RuntimeException if the event cannot be processed; {@link #process} leaves it to
+     *                          {@link DeadLetterExceptionHandler}.
+     */
+    Contribution detect(ChangeEvent<ContributionDto> event, Map<String, ContributionHistory> loadedHistories) {
+        long start = System.nanoTime();
+        PipelineMetrics.StageMeters meters = event.isUpdate() ? updateMeters : newMeters;
+        Contribution contribution;
+        try {
+            contribution = event.isUpdate() ? extractContribution(event, loadedHistories) : processNewContribution(event, loadedHistories);
+        } catch (RuntimeException e) {
+            meters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw e;
+        }
+        meters.record(contribution == null ? PipelineMetrics.Outcome.CLEAN : PipelineMetrics.Outcome.FLAGGED, start);
+        return contribution;
+    }
+
+    /**
+     * Processes a new contribution record.
+     *
+     * @param event           The decoded change event of the contribution.
+     * @param loadedHistories Histories already loaded from the database.
+     * @return A Contribution object if fraud is detected, null otherwise.
+     */
+    private Contribution processNewContribution(ChangeEvent<ContributionDto> event, Map<String, ContributionHistory> loadedHistories) {
+        //note: replays after a debezium restart were dropped by the deduplication stage
+
+        //check fraud
+        Contribution contributionAfter = event.after().toContribution(event.fieldScales());
+        HistoryLoader history = history(contributionAfter, loadedHistories);
+        Optional<String> reason = contributionFraudDetector.detectFraud(contributionAfter, detectionContext(contributionAfter, history));
+        record(contributionAfter, history.get(), false);
+        if (reason.isPresent()) {
+            contributionAfter.setReasonFlagged(reason.get());
+            return contributionAfter;
+        }
+        return null;
+    }
+
+    /**
+     * Extracts a contribution from an update event.
+     *
+     * @param event           The decoded change event of the contribution.
+     * @param loadedHistories Histories already loaded from the database.
+     * @return A Contribution object if fraud is detected, null otherwise.
+     */
+    private Contribution extractContribution(ChangeEvent<ContributionDto> event, Map<String, ContributionHistory> loadedHistories) {
+        Map<String, Integer> fieldScales = event.fieldScales();
+
+        Contribution contributionBefore = event.before().toContribution(fieldScales);
+        Contribution contributionAfter = event.after().toContribution(fieldScales);
+
+        // check for fraud
+        HistoryLoader history = history(contributionAfter, loadedHistories);
+        Optional<String> reason = contributionFraudDetector.detectFraud(contributionBefore, contributionAfter, detectionContext(contributionAfter, history));
+        record(contributionAfter, history.get(), true);
+        if (reason.isPresent()) {
+            contributionAfter.setReasonFlagged(reason.get());
+            return contributionAfter;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the history of the contribution's member, sponsor and type from the state store, or from the
+     * histories loaded with a batch. The first time a key is seen otherwise, the history is loaded from the
+     * database when first read.
+     */
+    private HistoryLoader history(Contribution contribution, Map<String, ContributionHistory> loadedHistories) {
+        String key = ContributionHistory.key(contribution);
+        ContributionHistory history = historyStore.get(key);
+        if (history == null) {
+            history = loadedHistories.get(key);
+        }
+        return new HistoryLoader(contribution, history);
+    }
+
+    /**
+     * @return The detection context of a contribution, with its history if known, or the loader of the history
+     * for the detector to start along with its other lookups.
+     */
+    private DetectionContext detectionContext(Contribution contribution, HistoryLoader history) {
+        return history.isLoaded()
+                ? new DetectionContext(history.get(), populationStats(contribution))
+                : new DetectionContext(null, populationStats(contribution), history);
+    }
+
+    /**
+     * Reads the statistics of the contribution's population segment, preferring the sponsor segment
+     * when enabled and it has enough samples.
+     */
+    private PopulationStats populationStats(Contribution contribution) {
+        FraudProperties.Population population = fraudProperties.getPopulation();
+        if (population.isSegmentBySponsor()) {
+            PopulationStats stats = ValueAndTimestamp.getValueOrNull(
+                    statsStore.get(PopulationStats.segmentKey(contribution.getType(), contribution.getSponsorId())));
+            if (stats != null && stats.getCount() >= population.getMinSamples()) {
+                return stats;
+            }
+        }
+        return ValueAndTimestamp.getValueOrNull(statsStore.get(PopulationStats.segmentKey(contribution.getType())));
+    }
+
+    /**
+     * Adds the processed contribution to its history and running statistics and writes the history back to the
+     * state store. A history whose database load failed is not written, so the next record of the key loads it
+     * again instead of the store keeping only the contributions seen from now on.
+     */
+    private void record(Contribution contribution, ContributionHistory history, boolean update) {
+        history.record(ContributionHistory.entryOf(contribution), historySize, fraudProperties.getMemberDeviation().getEwmaAlpha(), update);
+        if (!history.isUnseeded()) {
+            historyStore.put(ContributionHistory.key(contribution), history);
+        }
+    }
+
+    /**
+     * Loads the history of a contribution's member, sponsor and type from the database once, on the lookup thread
+     * of the detector or, if the detector did not start the lookup, on the first call. A call while the lookup
+     * runs waits for it, so the history recorded is the one the rules read. The lock is held across the query, so
+     * it is a {@link ReentrantLock} rather than a monitor, which would pin a caller running on a virtual thread.
+     */
+    private final class HistoryLoader implements Supplier<ContributionHistory> {
+        private final Contribution contribution;
+        private final ReentrantLock lock = new ReentrantLock();
+        private ContributionHistory history;
+
+        private HistoryLoader(Contribution contribution, ContributionHistory history) {
+            this.contribution = contribution;
+            this.history = history;
+        }
+
+        private boolean isLoaded() {
+            lock.lock();
+            try {
+                return history != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public ContributionHistory get() {
+            lock.lock();
+            try {
+                if (history == null) {
+                    history = contributionService.loadContributionHistory(contribution, historySize);
+                }
+                return history;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
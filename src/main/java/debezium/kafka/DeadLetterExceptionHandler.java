@@ -0,0 +1,92 @@
+package debezium.kafka;
+
+import debezium.enums.FailureCategory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.streams.errors.DeserializationExceptionHandler;
+import org.apache.kafka.streams.errors.ErrorHandlerContext;
+import org.apache.kafka.streams.errors.ProcessingExceptionHandler;
+import org.apache.kafka.streams.errors.ProductionExceptionHandler;
+import org.apache.kafka.streams.processor.api.Record;
+
+import java.util.Map;
+
+/**
+ * Sends records that fail deserialization, processing or serialization to the dead letter topic and lets the
+ * stream task continue with the next record. Production failures other than an oversized record are left
+ * to fail the task, as they concern the producer rather than the record. So are processing failures of the
+ * database, see {@link #isRetried}: the record is fine, and is processed again once the stream thread is replaced.
+ * <p>
+ * Kafka Streams instantiates the handler itself; it finds the {@link DeadLetterPublisher} bean under
+ * {@link DeadLetterPublisher#CONFIG} in the streams configuration.
+ */
+public class DeadLetterExceptionHandler implements DeserializationExceptionHandler, ProcessingExceptionHandler,
+        ProductionExceptionHandler {
+    private DeadLetterPublisher deadLetterPublisher;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object publisher = configs.get(DeadLetterPublisher.CONFIG);
+        if (!(publisher instanceof DeadLetterPublisher)) {
+            throw new ConfigException(DeadLetterPublisher.CONFIG, publisher, "must hold the DeadLetterPublisher");
+        }
+        this.deadLetterPublisher = (DeadLetterPublisher) publisher;
+    }
+
+    @Override
+    public DeserializationHandlerResponse handle(ErrorHandlerContext context, ConsumerRecord<byte[], byte[]> record,
+                                                 Exception exception) {
+        deadLetterPublisher.publish("deserialization", record.topic(), record.partition(), record.offset(),
+                record.key(), record.value(), exception);
+        return DeserializationHandlerResponse.CONTINUE;
+    }
+
+    @Override
+    public ProcessingHandlerResponse handle(ErrorHandlerContext context, Record<?, ?> record, Exception exception) {
+        if (isRetried(exception)) {
+            return ProcessingHandlerResponse.FAIL;
+        }
+        deadLetterPublisher.publish(context.processorNodeId(), context.topic(), context.partition(), context.offset(),
+                record.key(), record.value(), exception);
+        return ProcessingHandlerResponse.CONTINUE;
+    }
+
+    @Override
+    public ProductionExceptionHandlerResponse handle(ErrorHandlerContext context, ProducerRecord<byte[], byte[]> record,
+                                                     Exception exception) {
+        if (!(exception instanceof RecordTooLargeException)) {
+            return ProductionExceptionHandlerResponse.FAIL;
+        }
+        deadLetterPublisher.publish("production:" + record.topic(), context.topic(), context.partition(), context.offset(),
+                record.key(), null, exception); // the value is what is too large
+        return ProductionExceptionHandlerResponse.CONTINUE;
+    }
+
+    /**
+     * Tells whether a failure is of the database, such as an outage of a lookup, rather than of the record, so that
+     * the record is retried instead of dead-lettered.
+     *
+     * @param error The failure, possibly wrapped by Kafka Streams.
+     * @return true if the failure or one of its causes is a database or transient failure.
+     */
+    public static boolean isRetried(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (FailureCategory.of(cause) == FailureCategory.DATABASE) {
+                return true;
+            }
+        }
+        return FailureCategory.isTransient(error);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public ProductionExceptionHandlerResponse handleSerializationException(ErrorHandlerContext context, ProducerRecord record,
+                                                                           Exception exception,
+                                                                           SerializationExceptionOrigin origin) {
+        deadLetterPublisher.publish("serialization:" + record.topic(), context.topic(), context.partition(), context.offset(),
+                record.key(), record.value(), exception);
+        return ProductionExceptionHandlerResponse.CONTINUE;
+    }
+}
@@ -0,0 +1,146 @@
+package debezium.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import debezium.component.RateLimitedLogger;
+import debezium.enums.FailureCategory;
+import debezium.enums.KTopic;
+import debezium.service.UtilService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Publishes records that failed processing to the dead letter topic, with their original key and value and
+ * compact headers classifying the failure, and logs the failures at a limited rate.
+ * <p>
+ * Failing records are dropped from the pipeline without a stack trace being built into a log line, so a burst
+ * of malformed events does not stall the stream threads. Publishing is asynchronous and outside the streams
+ * transaction: a dead letter may be published twice, but never blocks or fails its stream task.
+ */
+@Slf4j
+@Component
+public class DeadLetterPublisher implements DisposableBean {
+    /**
+     * The streams configuration key holding this publisher, for {@link DeadLetterExceptionHandler}.
+     */
+    public static final String CONFIG = "debezium.dead-letter.publisher";
+    public static final String ERROR_HEADER = "dlt.error";
+    public static final String EXCEPTION_HEADER = "dlt.exception";
+    public static final String MESSAGE_HEADER = "dlt.message";
+    public static final String STAGE_HEADER = "dlt.stage";
+    public static final String TOPIC_HEADER = "dlt.topic";
+    public static final String PARTITION_HEADER = "dlt.partition";
+    public static final String OFFSET_HEADER = "dlt.offset";
+
+    private static final int MAX_MESSAGE_LENGTH = 256;
+
+    private final KafkaOperations<byte[], byte[]> template;
+    private final ObjectMapper mapper;
+    private final DefaultKafkaProducerFactory<byte[], byte[]> producerFactory;
+    private final RateLimitedLogger failureLog = new RateLimitedLogger(log, Duration.ofSeconds(10));
+
+    @Autowired
+    public DeadLetterPublisher(KafkaProperties kafkaProperties, UtilService utilService) {
+        this.producerFactory = new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties(null),
+                new ByteArraySerializer(), new ByteArraySerializer());
+        this.template = new KafkaTemplate<>(producerFactory);
+        this.mapper = utilService.mapper;
+    }
+
+    /**
+     * Publishes through the given template instead of a producer of its own, e.g. for topology tests.
+     *
+     * @param template The template to publish with.
+     * @param mapper   The mapper serializing values that are not already bytes or strings.
+     */
+    public DeadLetterPublisher(KafkaOperations<byte[], byte[]> template, ObjectMapper mapper) {
+        this.producerFactory = null;
+        this.template = template;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Publishes a failed record to the dead letter topic.
+     *
+     * @param stage     Where the record failed, e.g. the processor name.
+     * @param topic     The topic the record was read from, or null if unknown.
+     * @param partition The partition the record was read from, or -1 if unknown.
+     * @param offset    The offset of the record, or -1 if unknown.
+     * @param key       The record key: bytes, a string, or an object serialized as JSON.
+     * @param value     The record value: bytes, a string, or an object serialized as JSON.
+     * @param error     The failure.
+     * @return The category of the failure.
+     */
+    public FailureCategory publish(String stage, String topic, int partition, long offset, Object key, Object value, Throwable error) {
+        FailureCategory category = FailureCategory.of(error);
+        Throwable cause = FailureCategory.unwrap(error);
+        failureLog.warn(category.getTag(), cause, "Dead-lettered a record of %s-%d@%d that failed at %s as %s",
+                topic, partition, offset, stage, category.getTag());
+        try {
+            ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(KTopic.DEAD_LETTER_TOPIC.getTopicName(), bytes(key), bytes(value));
+            Headers headers = record.headers();
+            header(headers, ERROR_HEADER, category.getTag());
+            header(headers, EXCEPTION_HEADER, cause.getClass().getName());
+            header(headers, MESSAGE_HEADER, truncate(cause.getMessage()));
+            header(headers, STAGE_HEADER, stage);
+            header(headers, TOPIC_HEADER, topic);
+            if (partition >= 0) {
+                header(headers, PARTITION_HEADER, Integer.toString(partition));
+            }
+            if (offset >= 0) {
+                header(headers, OFFSET_HEADER, Long.toString(offset));
+            }
+            template.send(record).whenComplete((result, sendError) -> {
+                if (sendError != null) {
+                    failureLog.warn("send", sendError, "Failed to dead-letter a record of %s-%d@%d", topic, partition, offset);
+                }
+            });
+        } catch (RuntimeException e) {
+            failureLog.warn("send", e, "Failed to dead-letter a record of %s-%d@%d", topic, partition, offset);
+        }
+        return category;
+    }
+
+    private byte[] bytes(Object value) {
+        if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        if (value instanceof String string) {
+            return string.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            return null; // the headers still tell what failed where
+        }
+    }
+
+    private static void header(Headers headers, String name, String value) {
+        if (value != null) {
+            headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+
+    @Override
+    public void destroy() {
+        if (producerFactory != null) {
+            producerFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package debezium.kafka;
+
+import debezium.component.PipelineMetrics;
+import debezium.config.CdcProperties;
+import debezium.dto.ChangeEvent;
+import debezium.enums.Operation;
+import debezium.stats.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Drops change events that were already processed, such as those replayed after a connector restart.
+ * <p>
+ * Seen events are kept in a windowed state store for the configured retention, with Bloom filters in front of it
+ * so that the common "definitely new" case never touches the store. Only Bloom filter positives are checked
+ * against the store, and inserts the store does not know are finally checked against the database.
+ * Two filters are rotated every retention period so that they forget expired events along with the store.
+ *
+ * @param <T> The row type of the change events.
+ */
+@Slf4j
+public class DeduplicationProcessor<T> implements FixedKeyProcessor<String, ChangeEvent<T>, ChangeEvent<T>> {
+    private final String storeName;
+    private final Function<T, Long> idOf;
+    private final LongPredicate existsInDatabase;
+    private final CdcProperties.Dedup dedup;
+    private final PipelineMetrics.StageMeters dedupMeters;
+
+    private FixedKeyProcessorContext<String, ChangeEvent<T>> context;
+    private WindowStore<String, Long> seenStore;
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long retentionMs;
+
+    /**
+     * @param storeName        The name of the window store of seen events.
+     * @param idOf             Extracts the record ID from a row.
+     * @param existsInDatabase Checks whether a record ID was persisted before the store knew about it.
+     * @param dedup            The deduplication settings.
+     * @param dedupMeters      The timers of the duplicate checks.
+     */
+    public DeduplicationProcessor(String storeName, Function<T, Long> idOf, LongPredicate existsInDatabase,
+                                  CdcProperties.Dedup dedup, PipelineMetrics.StageMeters dedupMeters) {
+        this.storeName = storeName;
+        this.idOf = idOf;
+        this.existsInDatabase = existsInDatabase;
+        this.dedup = dedup;
+        this.dedupMeters = dedupMeters;
+    }
+
+    /**
+     * Builds the window store of seen events.
+     *
+     * @param storeName The name of the store.
+     * @param dedup     The deduplication settings.
+     * @param inMemory  Whether to keep the store in memory instead of RocksDB.
+     * @return The store builder.
+     */
+    public static StoreBuilder<WindowStore<String, Long>> storeBuilder(String storeName, CdcProperties.Dedup dedup, boolean inMemory) {
+        return Stores.windowStoreBuilder(
+                inMemory
+                        ? Stores.inMemoryWindowStore(storeName, dedup.getRetention(), dedup.getRetention(), false)
+                        : Stores.persistentWindowStore(storeName, dedup.getRetention(), dedup.getRetention(), false),
+                Serdes.String(),
+                Serdes.Long());
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, ChangeEvent<T>> context) {
+        this.context = context;
+        this.seenStore = context.getStateStore(storeName);
+        this.retentionMs = dedup.getRetention().toMillis();
+        this.current = newFilter();
+        this.previous = newFilter();
+
+        // rebuild the filter from the restored store
+        try (KeyValueIterator<Windowed<String>, Long> all = seenStore.all()) {
+            while (all.hasNext()) {
+                KeyValue<Windowed<String>, Long> seen = all.next();
+                current.put(seen.key.key());
+            }
+        }
+        context.schedule(dedup.getRetention(), PunctuationType.STREAM_TIME, timestamp -> {
+            previous = current;
+            current = newFilter();
+        });
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, ChangeEvent<T>> record) {
+        long start = System.nanoTime();
+        if (isDuplicate(record)) {
+            dedupMeters.record(PipelineMetrics.Outcome.SKIPPED, start);
+            return;
+        }
+        dedupMeters.record(PipelineMetrics.Outcome.OK, start);
+        context.forward(record);
+    }
+
+    /**
+     * Checks whether the event was seen before, remembering it if not.
+     */
+    private boolean isDuplicate(FixedKeyRecord<String, ChangeEvent<T>> record) {
+        ChangeEvent<T> event = record.value();
+        T row = event.after() != null ? event.after() : event.before();
+        if (row == null) {
+            return false;
+        }
+        long id = idOf.apply(row);
+        String key = dedupKey(event, id);
+        if (key == null) {
+            return false;
+        }
+        long timestamp = record.timestamp();
+
+        if (current.mightContain(key) || previous.mightContain(key)) {
+            if (seen(key, timestamp) || (isInsert(event) && existsInDatabase.test(id))) {
+                log.debug("Record with ID {} already processed, skipping.", id);
+                return true;
+            }
+        }
+        seenStore.put(key, timestamp, timestamp);
+        current.put(key);
+        return false;
+    }
+
+    /**
+     * A record is inserted once, so inserts are identified by record ID alone. Other operations are identified by
+     * record ID and log position, so that replays are dropped but later changes of the same record are not.
+     *
+     * @return The deduplication key, or null if the event carries no log position to tell its changes apart.
+     */
+    private String dedupKey(ChangeEvent<T> event, long id) {
+        if (isInsert(event)) {
+            return Long.toString(id);
+        }
+        if (event.source() == null || event.source().lsn() == null) {
+            return null;
+        }
+        return id + "@" + event.source().lsn();
+    }
+
+    private boolean isInsert(ChangeEvent<T> event) {
+        return event.op() == Operation.CREATE || event.op() == Operation.READ;
+    }
+
+    private boolean seen(String key, long timestamp) {
+        try (WindowStoreIterator<Long> seen = seenStore.fetch(key, timestamp - retentionMs, timestamp + retentionMs)) {
+            return seen.hasNext();
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(dedup.getExpectedRecords(), dedup.getFalsePositiveRate());
+    }
+}
@@ -0,0 +1,178 @@
+package debezium.kafka;
+
+import debezium.component.PipelineMetrics;
+import debezium.config.FraudProperties;
+import debezium.dto.ChangeEvent;
+import debezium.dto.InvoiceDto;
+import debezium.enums.DebeziumTopic;
+import debezium.model.Invoice;
+import debezium.service.FixedPoint;
+import debezium.stats.InvoiceProfile;
+import debezium.stats.InvoiceWindow;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flags invoice bursts and out-of-profile invoice totals per owner, keyed by the owner's customer ID.
+ * <p>
+ * Every invoice change updates the owner's hopping-window aggregates (count, total, largest amount) in a window
+ * store, and the owner's long-run profile in a key-value store, so detection is incremental and never queries
+ * the database. Only flagged invoices are forwarded.
+ */
+public class InvoiceAnomalyProcessor implements FixedKeyProcessor<String, ChangeEvent<InvoiceDto>, Invoice> {
+    public static final String WINDOW_STORE = "invoice-window-store";
+    public static final String PROFILE_STORE = "invoice-profile-store";
+
+    private final FraudProperties.Invoices invoices;
+    private final long windowSizeMs;
+    private final long windowAdvanceMs;
+    private final PipelineMetrics.StageMeters newMeters;
+    private final PipelineMetrics.StageMeters updateMeters;
+
+    private FixedKeyProcessorContext<String, Invoice> context;
+    private WindowStore<String, InvoiceWindow> windowStore;
+    private KeyValueStore<String, InvoiceProfile> profileStore;
+
+    public InvoiceAnomalyProcessor(FraudProperties fraudProperties, PipelineMetrics pipelineMetrics) {
+        this.invoices = fraudProperties.getInvoices();
+        this.windowSizeMs = invoices.getWindowSize().toMillis();
+        this.windowAdvanceMs = invoices.getWindowAdvance().toMillis();
+        String topic = DebeziumTopic.DEBEZIUM_INVOICES.getTopicName();
+        this.newMeters = pipelineMetrics.detection(topic, PipelineMetrics.Branch.NEW);
+        this.updateMeters = pipelineMetrics.detection(topic, PipelineMetrics.Branch.UPDATE);
+    }
+
+    /**
+     * Builds the window store of the owners' invoice aggregates, retained for two windows to absorb late events.
+     *
+     * @param invoices    The invoice detection settings.
+     * @param windowSerde The serde of the window aggregates.
+     * @param inMemory    Whether to keep the store in memory instead of RocksDB.
+     * @return The store builder.
+     */
+    public static StoreBuilder<WindowStore<String, InvoiceWindow>> windowStoreBuilder(FraudProperties.Invoices invoices,
+                                                                                      Serde<InvoiceWindow> windowSerde, boolean inMemory) {
+        Duration retention = invoices.getWindowSize().multipliedBy(2);
+        return Stores.windowStoreBuilder(
+                inMemory
+                        ? Stores.inMemoryWindowStore(WINDOW_STORE, retention, invoices.getWindowSize(), false)
+                        : Stores.persistentWindowStore(WINDOW_STORE, retention, invoices.getWindowSize(), false),
+                Serdes.String(),
+                windowSerde);
+    }
+
+    /**
+     * Builds the key-value store of the owners' invoicing profiles.
+     *
+     * @param profileSerde The serde of the profiles.
+     * @param inMemory     Whether to keep the store in memory instead of RocksDB.
+     * @return The store builder.
+     */
+    public static StoreBuilder<KeyValueStore<String, InvoiceProfile>> profileStoreBuilder(Serde<InvoiceProfile> profileSerde, boolean inMemory) {
+        return Stores.keyValueStoreBuilder(
+                inMemory ? Stores.inMemoryKeyValueStore(PROFILE_STORE) : Stores.persistentKeyValueStore(PROFILE_STORE),
+                Serdes.String(), profileSerde);
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Invoice> context) {
+        this.context = context;
+        this.windowStore = context.getStateStore(WINDOW_STORE);
+        this.profileStore = context.getStateStore(PROFILE_STORE);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, ChangeEvent<InvoiceDto>> record) {
+        long start = System.nanoTime();
+        ChangeEvent<InvoiceDto> event = record.value();
+        PipelineMetrics.StageMeters meters = event.isUpdate() ? updateMeters : newMeters;
+        Invoice invoice;
+        try {
+            invoice = detect(record.key(), record.timestamp(), event);
+        } catch (RuntimeException e) {
+            meters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw e; // dead-lettered by DeadLetterExceptionHandler
+        }
+        if (invoice == null) {
+            meters.record(PipelineMetrics.Outcome.CLEAN, start);
+            return;
+        }
+        meters.record(PipelineMetrics.Outcome.FLAGGED, start);
+        context.forward(record.withValue(invoice));
+    }
+
+    /**
+     * Applies an invoice change to the owner's windows and profile, and checks the windows against the profile.
+     *
+     * @param owner     The customer ID of the invoice owner.
+     * @param timestamp The time of the change in epoch milliseconds.
+     * @param event     The decoded change event of the invoice.
+     * @return The flagged invoice, or null if it is clean.
+     */
+    private Invoice detect(String owner, long timestamp, ChangeEvent<InvoiceDto> event) {
+        Invoice invoice = event.after().toInvoice(event.fieldScales());
+        long amount = invoice.fixedAmount();
+        int count = 1;
+        long change = amount;
+        if (event.isUpdate()) {
+            //note: an update changes the invoice's amount, it does not add an invoice
+            count = 0;
+            change = FixedPoint.add(amount, -event.before().toInvoice(event.fieldScales()).fixedAmount());
+            if (change == FixedPoint.NONE) {
+                change = 0;
+            }
+        }
+
+        // update every hopping window containing the change, keeping the busiest one
+        InvoiceWindow busiest = null;
+        long firstStart = Math.floorDiv(timestamp - windowSizeMs, windowAdvanceMs) * windowAdvanceMs + windowAdvanceMs;
+        for (long windowStart = Math.max(0, firstStart); windowStart <= timestamp; windowStart += windowAdvanceMs) {
+            InvoiceWindow window = windowStore.fetch(owner, windowStart);
+            if (window == null) {
+                window = new InvoiceWindow();
+            }
+            window.apply(count, change, amount);
+            windowStore.put(owner, window, windowStart);
+            if (busiest == null || window.getSum() > busiest.getSum()
+                    || (window.getSum() == busiest.getSum() && window.getCount() > busiest.getCount())) {
+                busiest = window;
+            }
+        }
+
+        InvoiceProfile profile = profileStore.get(owner);
+        if (profile == null) {
+            profile = new InvoiceProfile();
+        }
+        //note: the expectation is taken before this invoice joins the profile, so a spike cannot mask itself
+        double expected = profile.expectedSum(timestamp, invoices.getWindowSize(), invoices.getProfileHalfLife(), invoices.getMinProfileSamples());
+        profile.apply(timestamp, count, FixedPoint.toDouble(change), invoices.getProfileHalfLife());
+        profileStore.put(owner, profile);
+
+        List<String> reasons = new ArrayList<>(2);
+        if (busiest != null && count > 0 && busiest.getCount() > invoices.getBurstCount()) {
+            reasons.add(String.format("&#9889 Burst of %d invoices within %s (max allowed: %d)",
+                    busiest.getCount(), invoices.getWindowSize(), invoices.getBurstCount()));
+        }
+        if (busiest != null && !Double.isNaN(expected) && change > 0
+                && FixedPoint.toDouble(busiest.getSum()) > expected * invoices.getTotalMultiplier()) {
+            reasons.add(String.format("&#128293 Invoice total is out of profile: %.2f within %s, largest invoice %.2f (usual total: %.2f)",
+                    FixedPoint.toDouble(busiest.getSum()), invoices.getWindowSize(), FixedPoint.toDouble(busiest.getMax()), expected));
+        }
+        if (reasons.isEmpty()) {
+            return null;
+        }
+        invoice.setReasonFlagged(String.join("<br><br>", reasons));
+        return invoice;
+    }
+}
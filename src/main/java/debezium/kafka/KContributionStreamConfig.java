@@ -1,34 +1,76 @@
 package debezium.kafka;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import debezium.component.ChangeEventDecoder;
 import debezium.component.ContributionFraudDetector;
+import debezium.component.PipelineMetrics;
+import debezium.config.CdcProperties;
+import debezium.config.FraudProperties;
+import debezium.config.TopicProperties;
+import debezium.dto.ChangeEvent;
 import debezium.dto.ContributionDto;
+import debezium.dto.ContributionHistory;
 import debezium.enums.DebeziumTopic;
 import debezium.enums.KTopic;
 import debezium.model.Contribution;
 import debezium.service.ContributionService;
+import debezium.service.FixedPoint;
 import debezium.service.UtilService;
+import debezium.stats.PopulationStats;
+import debezium.stats.StatsUpdate;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
-import org.apache.kafka.streams.kstream.Branched;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.serializer.JsonSerde;
 
-import java.math.RoundingMode;
-import java.time.YearMonth;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Configuration
 public class KContributionStreamConfig {
+    public static final String DEDUP_STORE = "contribution-dedup-store";
+    public static final String MEMBER_REPARTITION = "contribution-by-member";
 
     private final ContributionFraudDetector contributionFraudDetector;
+    private final ContributionService contributionService;
+    private final ChangeEventDecoder changeEventDecoder;
     private final UtilService utilService;
-
-    public KContributionStreamConfig(ContributionFraudDetector contributionFraudDetector, UtilService utilService) {
+    private final FraudProperties fraudProperties;
+    private final CdcProperties cdcProperties;
+    private final TopicProperties topicProperties;
+    private final PipelineMetrics pipelineMetrics;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final PipelineMetrics.StageMeters decodeMeters;
+
+    public KContributionStreamConfig(ContributionFraudDetector contributionFraudDetector, ContributionService contributionService,
+                                     ChangeEventDecoder changeEventDecoder, UtilService utilService,
+                                     FraudProperties fraudProperties, CdcProperties cdcProperties, TopicProperties topicProperties,
+                                     PipelineMetrics pipelineMetrics, DeadLetterPublisher deadLetterPublisher) {
         this.contributionFraudDetector = contributionFraudDetector;
+        this.contributionService = contributionService;
+        this.changeEventDecoder = changeEventDecoder;
         this.utilService = utilService;
+        this.fraudProperties = fraudProperties;
+        this.cdcProperties = cdcProperties;
+        this.topicProperties = topicProperties;
+        this.pipelineMetrics = pipelineMetrics;
+        this.deadLetterPublisher = deadLetterPublisher;
+        this.decodeMeters = pipelineMetrics.decode(DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName());
     }
 
 
@@ -40,39 +82,72 @@ public class KContributionStreamConfig {
      */
     @Bean
     public KStream<String, String> stream(StreamsBuilder builder) {
+        // Persistent, changelog-backed history of each member's latest contributions per sponsor and type
+        boolean inMemory = cdcProperties.isInMemoryStores();
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                inMemory
+                        ? Stores.inMemoryKeyValueStore(ContributionFraudProcessor.HISTORY_STORE)
+                        : Stores.persistentKeyValueStore(ContributionFraudProcessor.HISTORY_STORE),
+                Serdes.String(),
+                jsonSerde(ContributionHistory.class)
+        ));
+
+        // Record IDs seen within the dedup retention, to drop replays after connector restarts
+        builder.addStateStore(DeduplicationProcessor.storeBuilder(DEDUP_STORE, cdcProperties.getDedup(), inMemory));
+
+        // Population statistics, published to a compacted topic and read back by every instance as a global store
+        JsonSerde<PopulationStats> statsSerde = jsonSerde(PopulationStats.class);
+        builder.globalTable(KTopic.CONTRIBUTION_STATS_TOPIC.getTopicName(),
+                Consumed.with(Serdes.String(), statsSerde),
+                Materialized.<String, PopulationStats, KeyValueStore<Bytes, byte[]>>as(ContributionFraudProcessor.GLOBAL_STATS_STORE)
+                        .withStoreType(storeType(inMemory)));
+
         KStream<String, String> stream = builder.stream(DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName());
 
-        // Use split() to create a new Splitter instance
-        stream.split()
-                .branch((key, rawJson) -> utilService.beforeJson(rawJson) == null, // Branch for new records
-                        Branched.withConsumer(newStream ->
-                                newStream
-                                        .mapValues(rawJson -> {
-                                            Contribution contribution = processNewContribution(rawJson);
-                                            if (contribution == null) {
-                                                return null;
-                                            }
-                                            return contribution.toString();
-                                        })
-                                        .filter((key, value) -> value != null)
-                                        .to(KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName())
-                        )
-                )
-                .branch((key, rawJson) -> utilService.beforeJson(rawJson) != null, // Branch for updates/deletes
-                        Branched.withConsumer(existingStream ->
-                                existingStream
-                                        .mapValues(rawJson -> {
-                                            Contribution contribution = extractContribution(rawJson);
-                                            if (contribution == null) {
-                                                return null;
-                                            }
-                                            return contribution.toString();
-                                        })
-                                        .filter((key, value) -> value != null)
-                                        .to(KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName())//stream values and forward to another topic
-                        )
-                )
-                .noDefaultBranch(); // Optional: Specify that there's no default branch for un-matched records
+        // Decode each envelope once; new records and updates are analysed, deletes, truncates and messages are not
+        KStream<String, ChangeEvent<ContributionDto>> events = stream.mapValues(this::decode)
+                .filter((key, event) -> event != null && (event.isNewRecord() || event.isUpdate()))
+                .processValues(() -> new DeduplicationProcessor<>(DEDUP_STORE, ContributionDto::id,
+                        contributionFraudDetector::existsContributionByRecordId, cdcProperties.getDedup(),
+                        pipelineMetrics.dedup(DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName())), DEDUP_STORE);
+
+        // Debezium keys changes by primary key; co-locate each member's changes for a sponsor on one partition,
+        // so that their history is local to one task and instances never compete for the same member
+        Repartitioned<String, ChangeEvent<ContributionDto>> byMember = Repartitioned
+                .with(Serdes.String(), new JsonSerde<>(new TypeReference<ChangeEvent<ContributionDto>>() {
+                }, utilService.mapper).noTypeInfo().ignoreTypeHeaders())
+                .withName(MEMBER_REPARTITION);
+        if (topicProperties.getMemberPartitions() > 0) {
+            byMember = byMember.withNumberOfPartitions(topicProperties.getMemberPartitions());
+        }
+        KStream<String, ChangeEvent<ContributionDto>> memberEvents = events
+                .selectKey((key, event) -> memberKey(event.after()))
+                .repartition(byMember);
+
+        KStream<String, Contribution> flagged;
+        if (fraudProperties.getBatch().isEnabled()) {
+            // Buffer changes so that the histories of a whole batch of members are loaded with one query
+            builder.addStateStore(ContributionBatchProcessor.storeBuilder(jsonSerde(ContributionBatchProcessor.BufferedEvent.class)));
+            flagged = memberEvents.process(() -> new ContributionBatchProcessor(newFraudProcessor(), contributionService, deadLetterPublisher, fraudProperties),
+                    ContributionFraudProcessor.HISTORY_STORE, ContributionBatchProcessor.BATCH_STORE);
+        } else {
+            flagged = memberEvents.processValues(this::newFraudProcessor, ContributionFraudProcessor.HISTORY_STORE);
+        }
+        flagged.to(KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName(), //forward flagged contributions to another topic
+                Produced.with(Serdes.String(), new ProcessedRecordSerde<>(Contribution.class, pipelineMetrics)));
+
+        // Continuously aggregate contribution totals per population segment
+        FraudProperties.Population population = fraudProperties.getPopulation();
+        events.flatMap((key, event) -> statsUpdates(event))
+                .groupByKey(Grouped.with("contribution-stats", Serdes.String(), jsonSerde(StatsUpdate.class)))
+                .aggregate(() -> new PopulationStats(population.getRelativeAccuracy()),
+                        (segment, update, stats) -> stats.apply(update, population.getPercentile()),
+                        Materialized.<String, PopulationStats, KeyValueStore<Bytes, byte[]>>as(ContributionFraudProcessor.STATS_STORE)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(statsSerde)
+                                .withStoreType(storeType(inMemory)))
+                .toStream()
+                .to(KTopic.CONTRIBUTION_STATS_TOPIC.getTopicName(), Produced.with(Serdes.String(), statsSerde));
 
         return stream;
 
@@ -80,78 +155,79 @@ public class KContributionStreamConfig {
     }
 
 
+    private static Materialized.StoreType storeType(boolean inMemory) {
+        return inMemory ? Materialized.StoreType.IN_MEMORY : Materialized.StoreType.ROCKS_DB;
+    }
+
+    /**
+     * @return The partitioning key of a contribution: its member and sponsor.
+     */
+    private static String memberKey(ContributionDto contribution) {
+        return contribution.member_id() + "|" + contribution.sponsor_id();
+    }
+
+    private ContributionFraudProcessor newFraudProcessor() {
+        return new ContributionFraudProcessor(contributionFraudDetector, contributionService, fraudProperties, pipelineMetrics);
+    }
+
     /**
-     * Processes a new contribution record.
+     * Maps a contribution change to the statistics updates of its population segments.
      *
-     * @param rawJson The raw JSON string representing the contribution.
-     * @return A Contribution object if fraud is detected, null otherwise.
+     * @param event The decoded change event of the contribution.
+     * @return One update per population segment, empty if the amounts cannot be decoded.
+     *         Such events fail fraud detection too, which dead-letters them, so they are skipped here quietly.
      */
-    private Contribution processNewContribution(String rawJson) {
+    private List<KeyValue<String, StatsUpdate>> statsUpdates(ChangeEvent<ContributionDto> event) {
+        List<KeyValue<String, StatsUpdate>> updates = new ArrayList<>(2);
         try {
-            ObjectMapper mapper = utilService.mapper;
-            JsonNode before = utilService.beforeJson(rawJson); //can be removed.
-            JsonNode after = utilService.afterJson(rawJson);
-
-            if (after == null || after.isNull() || after.isEmpty()) return null;
-
-            // Deserialize the JSON to ContributionDto
-            ContributionDto contributionDtoAfter = mapper.readValue(after.toString(), ContributionDto.class);
-            long id = contributionDtoAfter.id();
-            if (before == null || before.isNull() || before.isEmpty()) {
-                //note: probably a new record/debezium restart issue, check if exists
-                if (contributionFraudDetector.existsContributionByRecordId(id)) {
-                    //return if exists, we checked before
-                    System.out.println("Record with ID " + id + " already exists, skipping.");
-                    return null;
-                }
+            Contribution after = event.after().toContribution(event.fieldScales());
+            Double removed = event.isUpdate() ? total(event.before().toContribution(event.fieldScales())) : null;
+            StatsUpdate update = new StatsUpdate(removed, total(after));
+            updates.add(KeyValue.pair(PopulationStats.segmentKey(after.getType()), update));
+            if (fraudProperties.getPopulation().isSegmentBySponsor()) {
+                updates.add(KeyValue.pair(PopulationStats.segmentKey(after.getType(), after.getSponsorId()), update));
             }
+        } catch (RuntimeException e) {
+            updates.clear();
+        }
+        return updates;
+    }
 
-            //check fraud
-            Contribution contributionAfter = contributionDtoAfter.toContribution(utilService.getFieldScales(rawJson));
-            Optional<String> reason = contributionFraudDetector.detectFraud(contributionAfter);
-            if (reason.isPresent()) {
-                contributionAfter.setReasonFlagged(reason.get());
-                return contributionAfter;
-            }
-            return null;
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return null;
+    private static double total(Contribution contribution) {
+        long total = contribution.fixedTotal();
+        if (total != FixedPoint.NONE) {
+            return FixedPoint.toDouble(total);
         }
+        return Optional.ofNullable(contribution.getEe()).orElse(BigDecimal.ZERO)
+                .add(Optional.ofNullable(contribution.getEr()).orElse(BigDecimal.ZERO))
+                .doubleValue();
     }
 
+    private <T> JsonSerde<T> jsonSerde(Class<T> type) {
+        return new JsonSerde<>(type, utilService.mapper).noTypeInfo().ignoreTypeHeaders();
+    }
 
     /**
-     * Extracts a contribution from the raw JSON string.
+     * Decodes the raw Debezium envelope of a contribution change.
+     *
+     * Failures are thrown to {@link DeadLetterExceptionHandler}, which dead-letters the envelope.
      *
-     * @param rawJson The raw JSON string representing the contribution.
-     * @return A Contribution object if fraud is detected, null otherwise.
+     * @param rawJson The raw JSON string representing the change event.
+     * @return The decoded change event, or null if the message carries no change (tombstones, heartbeats).
+     * @throws UncheckedIOException if the message is not valid JSON or its rows do not bind.
      */
-    private Contribution extractContribution(String rawJson) {
+    private ChangeEvent<ContributionDto> decode(String rawJson) {
+        long start = System.nanoTime();
         try {
-            ObjectMapper mapper = utilService.mapper;
-            Map<String, Integer> fieldScales = utilService.getFieldScales(rawJson);
-            JsonNode before = utilService.beforeJson(rawJson);
-            JsonNode after = utilService.afterJson(rawJson);
-
-            if (after == null || after.isNull() || after.isEmpty()) return null; //check why record was deleted
-
-            ContributionDto contributionDtoBefore = mapper.readValue(before.toString(), ContributionDto.class);
-            ContributionDto contributionDtoAfter = mapper.readValue(after.toString(), ContributionDto.class);
-
-            Contribution contributionBefore = contributionDtoBefore.toContribution(fieldScales);
-            Contribution contributionAfter = contributionDtoAfter.toContribution(fieldScales);
-
-            // check for fraud
-            Optional<String> reason = contributionFraudDetector.detectFraud(contributionBefore, contributionAfter);
-            if (reason.isPresent()) {
-                contributionAfter.setReasonFlagged(reason.get());
-                return contributionAfter;
-            }
-            return null;
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return null;
+            ChangeEvent<ContributionDto> event = changeEventDecoder.decode(rawJson, ContributionDto.class);
+            decodeMeters.record(event == null ? PipelineMetrics.Outcome.SKIPPED : PipelineMetrics.Outcome.OK, start);
+            return event;
+        } catch (IOException e) {
+            decodeMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            decodeMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw e;
         }
     }
 
@@ -1,83 +1,106 @@
 package debezium.kafka;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.type.TypeReference;
+import debezium.component.ChangeEventDecoder;
+import debezium.component.PipelineMetrics;
+import debezium.config.CdcProperties;
+import debezium.config.FraudProperties;
+import debezium.dto.ChangeEvent;
+import debezium.dto.InvoiceDto;
 import debezium.enums.DebeziumTopic;
 import debezium.enums.KTopic;
 import debezium.model.Invoice;
 import debezium.service.InvoiceService;
 import debezium.service.UtilService;
+import debezium.stats.InvoiceProfile;
+import debezium.stats.InvoiceWindow;
+import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.serializer.JsonSerde;
 
-import java.math.BigDecimal;
-
-import static debezium.service.UtilService.decodeDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @Configuration
 public class KInvoiceStreamConfig {
+    public static final String DEDUP_STORE = "invoice-dedup-store";
+    public static final String OWNER_REPARTITION = "invoice-by-owner";
 
     private final InvoiceService invoiceService;
-    private final UtilService  utilService;
-    public KInvoiceStreamConfig(InvoiceService invoiceService, UtilService utilService) {
+    private final ChangeEventDecoder changeEventDecoder;
+    private final UtilService utilService;
+    private final FraudProperties fraudProperties;
+    private final CdcProperties cdcProperties;
+    private final PipelineMetrics pipelineMetrics;
+    private final PipelineMetrics.StageMeters decodeMeters;
+    public KInvoiceStreamConfig(InvoiceService invoiceService, ChangeEventDecoder changeEventDecoder, UtilService utilService,
+                                FraudProperties fraudProperties, CdcProperties cdcProperties, PipelineMetrics pipelineMetrics) {
         this.invoiceService = invoiceService;
+        this.changeEventDecoder = changeEventDecoder;
         this.utilService = utilService;
+        this.fraudProperties = fraudProperties;
+        this.cdcProperties = cdcProperties;
+        this.pipelineMetrics = pipelineMetrics;
+        this.decodeMeters = pipelineMetrics.decode(DebeziumTopic.DEBEZIUM_INVOICES.getTopicName());
     }
 
     @Bean
     public KStream<String, String> invoicesStream(StreamsBuilder builder) {
+        // Record IDs seen within the dedup retention, to drop replays after connector restarts
+        builder.addStateStore(DeduplicationProcessor.storeBuilder(DEDUP_STORE, cdcProperties.getDedup(), cdcProperties.isInMemoryStores()));
+
+        // Hopping-window aggregates and long-run profiles of each invoice owner
+        builder.addStateStore(InvoiceAnomalyProcessor.windowStoreBuilder(fraudProperties.getInvoices(), jsonSerde(InvoiceWindow.class), cdcProperties.isInMemoryStores()));
+        builder.addStateStore(InvoiceAnomalyProcessor.profileStoreBuilder(jsonSerde(InvoiceProfile.class), cdcProperties.isInMemoryStores()));
+
         KStream<String, String> stream = builder.stream(DebeziumTopic.DEBEZIUM_INVOICES.getTopicName());
 
-        //stream values and forward to another topic
-        stream.mapValues(rawJson -> {
-                    JsonNode beforeJson = utilService.beforeJson(rawJson);
-                    if (beforeJson == null) {
-                        //note: new record
-                        return null;
-                    }
-                    JsonNode afterJson = utilService.afterJson(rawJson);
-                    if (afterJson == null) {
-                        //note: record deleted, check why
-                        return null; // Skip if 'after' is missing
-                    }
-                    Invoice invoice = extractInvoice(beforeJson, afterJson);
-                    if (invoice == null) {
-                        return null; // Skip if invoice extraction fails
-                    }
-                    return invoice.toString(); // Convert to string or any other format as needed
-                }).filter((key, value) -> value != null) // Filter out null values
-                .to(KTopic.PROCESSED_INVOICES_TOPIC.getTopicName()); // Forward to another topic
+        // Decode each envelope once; new invoices and updates are analysed per owner, deletes are not
+        stream.mapValues(this::decode)
+                .filter((key, event) -> event != null && (event.isNewRecord() || event.isUpdate()))
+                .processValues(() -> new DeduplicationProcessor<>(DEDUP_STORE, InvoiceDto::id,
+                        invoiceService::existsInvoiceByRecordId, cdcProperties.getDedup(),
+                        pipelineMetrics.dedup(DebeziumTopic.DEBEZIUM_INVOICES.getTopicName())), DEDUP_STORE)
+                .filter((key, event) -> event.after().customer_id() != null) // invoices without an owner have no profile
+                .selectKey((key, event) -> String.valueOf(event.after().customer_id()))
+                .repartition(Repartitioned.with(Serdes.String(), new JsonSerde<>(new TypeReference<ChangeEvent<InvoiceDto>>() {
+                }, utilService.mapper).noTypeInfo().ignoreTypeHeaders()).withName(OWNER_REPARTITION))
+                .processValues(() -> new InvoiceAnomalyProcessor(fraudProperties, pipelineMetrics),
+                        InvoiceAnomalyProcessor.WINDOW_STORE, InvoiceAnomalyProcessor.PROFILE_STORE)
+                .to(KTopic.PROCESSED_INVOICES_TOPIC.getTopicName(), //forward flagged invoices to another topic
+                        Produced.with(Serdes.String(), new ProcessedRecordSerde<>(Invoice.class, pipelineMetrics)));
         return stream;
     }
 
-    private Invoice extractInvoice(JsonNode before, JsonNode after) {
-        try {
-
-            if (after == null || after.isNull() || after.isEmpty()) return null; //check why record was deleted
-
-            long id = after.path("id").asLong();
-
-            if (before == null || before.isNull() || before.isEmpty()) {
-                //note: probably a new record/debezium restart issue, check if exists
-                if (invoiceService.existsInvoiceByRecordId(id)) {
-                    //return if exists, we checked before
-                    System.out.println("Record with ID " + id + " already exists, skipping.");
-                    return null;
-                }
-            }
-
-            String encoded = after.path("amount").asText();
-            BigDecimal amount = decodeDecimal(encoded, 5); // scale = 2
+    private <T> JsonSerde<T> jsonSerde(Class<T> type) {
+        return new JsonSerde<>(type, utilService.mapper).noTypeInfo().ignoreTypeHeaders();
+    }
 
-            // check for fraud
-            Invoice invoice = new Invoice();
-            invoice.setRecordId(id == 0 ? null : id); // Set ID if it's not zero
-            invoice.setTotalAmount(amount.doubleValue());
-            return invoice;
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return null;
+    /**
+     * Decodes the raw Debezium envelope of an invoice change.
+     * Failures are thrown to {@link DeadLetterExceptionHandler}, which dead-letters the envelope.
+     *
+     * @param rawJson The raw JSON string representing the change event.
+     * @return The decoded change event, or null if the message carries no change (tombstones, heartbeats).
+     * @throws UncheckedIOException if the message is not valid JSON or its rows do not bind.
+     */
+    private ChangeEvent<InvoiceDto> decode(String rawJson) {
+        long start = System.nanoTime();
+        try {
+            ChangeEvent<InvoiceDto> event = changeEventDecoder.decode(rawJson, InvoiceDto.class);
+            decodeMeters.record(event == null ? PipelineMetrics.Outcome.SKIPPED : PipelineMetrics.Outcome.OK, start);
+            return event;
+        } catch (IOException e) {
+            decodeMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            decodeMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw e;
         }
     }
 
@@ -1,27 +1,30 @@
 package debezium.kafka;
 
+import debezium.config.CdcProperties;
+import debezium.config.TopicProperties;
 import debezium.enums.DebeziumTopic;
 import debezium.enums.KTopic;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.NewTopic;
-import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.KafkaAdmin;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
+@Slf4j
 @Configuration
 public class KafkaConfig {
 
-    // The number of CPU cores available to the JVM, used for configuring Kafka's thread pool.
-    private final static int CPU_COUNT = Runtime.getRuntime().availableProcessors();
-
     /**
      * Creates a KafkaAdmin bean to manage Kafka topics.
      * This bean is used to create and manage Kafka topics programmatically.
@@ -36,13 +39,14 @@ public class KafkaConfig {
     }
 
     /**
-     * Registers Kafka topics defined in the DebeziumTopic enum and KTopic enum.
-     * This method combines the topic names from both enums and registers them as beans.
+     * Declares the Kafka topics defined in the DebeziumTopic enum and KTopic enum, so that KafkaAdmin creates
+     * the missing ones with the configured partitions and replicas.
      *
-     * @return BeanFactoryPostProcessor that registers the topics.
+     * @param topicProperties The topic settings.
+     * @return The topics to create.
      */
     @Bean
-    public static BeanFactoryPostProcessor topicRegistrar() {
+    public KafkaAdmin.NewTopics topics(TopicProperties topicProperties) {
         Stream<String> debeziumTopicNames = Arrays.stream(DebeziumTopic.values())
                 .map(DebeziumTopic::getTopicName);
 
@@ -52,17 +56,55 @@ public class KafkaConfig {
         // Combine both streams into an array of topic names
         List<String> TOPIC_NAMES = Stream.concat(debeziumTopicNames, kTopicNames).toList();
 
-        return beanFactory -> {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String topicName : TOPIC_NAMES) {
+            TopicBuilder builder = TopicBuilder.name(topicName)
+                    .partitions(topicProperties.partitionsOf(topicName))
+                    .replicas(topicProperties.getReplicas());
+            KTopic kTopic = KTopic.fromTopicName(topicName);
+            if (kTopic != null && kTopic.isCompacted()) {
+                builder.compact(); // keyed snapshots, only the latest value per key is needed
+            }
+            topics.add(builder.build());
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
 
-            for (String topicName : TOPIC_NAMES) {
-                NewTopic topic = TopicBuilder.name(topicName)
-                        .partitions(CPU_COUNT-1) // Use CPU_COUNT - 1 to avoid overloading the system
-                        .replicas(1)
-                        .build();
+    /**
+     * Hands the dead letter publisher to the streams exception handlers, which Kafka Streams instantiates itself
+     * and configures from the streams configuration.
+     *
+     * @param deadLetterPublisher The publisher of failed records.
+     * @return The configurer of the streams factory bean.
+     */
+    @Bean
+    public StreamsBuilderFactoryBeanConfigurer deadLetterConfigurer(DeadLetterPublisher deadLetterPublisher) {
+        return factoryBean -> factoryBean.getStreamsConfiguration().put(DeadLetterPublisher.CONFIG, deadLetterPublisher);
+    }
 
-                beanFactory.registerSingleton(topicName + "Topic", topic);
+    /**
+     * Replaces a stream thread that failed on the database, see {@link DeadLetterExceptionHandler#isRetried}, after
+     * {@code cdc.retry-backoff}, so that its tasks process the failed record again from the last commit. Other
+     * failures shut the client down.
+     *
+     * @param cdcProperties The CDC settings.
+     * @return The configurer of the streams factory bean.
+     */
+    @Bean
+    public StreamsBuilderFactoryBeanConfigurer retryConfigurer(CdcProperties cdcProperties) {
+        long backoffMillis = cdcProperties.getRetryBackoff().toMillis();
+        return factoryBean -> factoryBean.setStreamsUncaughtExceptionHandler(exception -> {
+            if (!DeadLetterExceptionHandler.isRetried(exception)) {
+                return StreamThreadExceptionResponse.SHUTDOWN_CLIENT;
+            }
+            log.warn("Stream thread failed on the database, replacing it in {} ms: {}", backoffMillis, exception.toString());
+            try {
+                Thread.sleep(backoffMillis); // on the failed thread, so that an outage is not retried in a busy loop
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        };
+            return StreamThreadExceptionResponse.REPLACE_THREAD;
+        });
     }
 
 }
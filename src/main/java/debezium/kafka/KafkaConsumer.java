@@ -1,46 +1,80 @@
 package debezium.kafka;
 
 import debezium.enums.KTopic;
-import debezium.service.ContributionService;
-import debezium.service.InvoiceService;
+import debezium.model.Contribution;
+import debezium.model.Invoice;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @Component
 public class KafkaConsumer {
-    private final InvoiceService invoiceService;
-    private final ContributionService contributionService;
+    private final ProcessedRecordSink sink;
+    private final ProcessedRecordSerde<Invoice> invoiceSerde = new ProcessedRecordSerde<>(Invoice.class);
+    private final ProcessedRecordSerde<Contribution> contributionSerde = new ProcessedRecordSerde<>(Contribution.class);
 
-    public KafkaConsumer(InvoiceService invoiceService, ContributionService contributionService) {
-        this.invoiceService = invoiceService;
-        this.contributionService = contributionService;
+    public KafkaConsumer(ProcessedRecordSink sink) {
+        this.sink = sink;
     }
 
-    @KafkaListener(topicPattern = "processed.*", groupId = "processed-data-group")
-    public void listen(ConsumerRecord<String, Object> record) {
-        Object o = record.value();
-        String topic = record.topic();
-        KTopic kTopic = KTopic.fromTopicName(topic);
-        if (kTopic==null){
-            log.warn("Received data from unknown topic: {}", topic);
-            return;
-        }
-        switch (kTopic) {
-            case PROCESSED_INVOICES_TOPIC:
-                log.info("Received processed invoice data from topic: {}", topic);
-                invoiceService.processInvoice(o);
-                break;
-            case PROCESSED_CONTRIBUTIONS_TOPIC:
-                log.info("Received processed contribution data from topic: {}", topic);
-                contributionService.processContribution(o);
-                break;
-            default:
+    /**
+     * Receives a whole poll of processed records and hands each topic's records to the {@link ProcessedRecordSink},
+     * which acknowledges the poll once they are committed; the container runs with {@code ack-mode: manual}.
+     * Values are decoded with {@link ProcessedRecordSerde}, so the listener reads raw bytes.
+     *
+     * @param records        The records returned by one poll.
+     * @param acknowledgment Commits the offsets of the poll.
+     * @throws InterruptedException if interrupted while the sink is full.
+     */
+    @KafkaListener(topicPattern = "processed.*", groupId = "processed-data-group", batch = "true",
+            properties = "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer")
+    public void listen(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) throws InterruptedException {
+        List<Invoice> invoices = new ArrayList<>();
+        List<Contribution> contributions = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            String topic = record.topic();
+            KTopic kTopic = KTopic.fromTopicName(topic);
+            if (kTopic == null) {
                 log.warn("Received data from unknown topic: {}", topic);
+                continue;
+            }
+            switch (kTopic) {
+                case PROCESSED_INVOICES_TOPIC:
+                    addDecoded(invoices, invoiceSerde, record);
+                    break;
+                case PROCESSED_CONTRIBUTIONS_TOPIC:
+                    addDecoded(contributions, contributionSerde, record);
+                    break;
+                default:
+                    log.warn("Received data from unknown topic: {}", topic);
+            }
+        }
+        if (!invoices.isEmpty()) {
+            log.info("Received {} processed invoices", invoices.size());
+        }
+        if (!contributions.isEmpty()) {
+            log.info("Received {} processed contributions", contributions.size());
         }
+        sink.write(invoices, contributions, acknowledgment);
     }
 
-
+    private <T> void addDecoded(List<T> values, ProcessedRecordSerde<T> serde, ConsumerRecord<String, byte[]> record) {
+        try {
+            T value = serde.deserialize(record.topic(), record.value());
+            if (value != null) {
+                values.add(value);
+            } else {
+                log.warn("Received null data at {}-{}@{}", record.topic(), record.partition(), record.offset());
+            }
+        } catch (SerializationException e) {
+            log.warn("Failed to decode record at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), e.getMessage());
+        }
+    }
 }
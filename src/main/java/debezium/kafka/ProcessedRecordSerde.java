@@ -0,0 +1,128 @@
+package debezium.kafka;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import debezium.component.PipelineMetrics;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serde of the records on the processed_* topics.
+ * <p>
+ * Values are written as a one byte format version followed by the record in Smile, a compact binary JSON encoding,
+ * so the format can evolve without breaking consumers of older records. Values written as plain JSON text before
+ * this format existed are still read. Readers and writers are immutable and shared by all threads.
+ *
+ * @param <T> The record type.
+ */
+public class ProcessedRecordSerde<T> implements Serde<T>, Serializer<T>, Deserializer<T> {
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final ObjectMapper SMILE_MAPPER = SmileMapper.builder()
+            .disable(SmileGenerator.Feature.WRITE_HEADER) //note: the version byte replaces the 4 byte Smile header
+            .disable(SmileParser.Feature.REQUIRE_HEADER)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .findAndAddModules()
+            .build();
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .findAndRegisterModules();
+
+    private final Class<T> type;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final ObjectReader legacyReader;
+    private final PipelineMetrics pipelineMetrics;
+    private final Map<String, PipelineMetrics.StageMeters> serializationMeters = new ConcurrentHashMap<>();
+
+    public ProcessedRecordSerde(Class<T> type) {
+        this(type, null);
+    }
+
+    /**
+     * @param type            The record type.
+     * @param pipelineMetrics The metrics to time serialization with, or null.
+     */
+    public ProcessedRecordSerde(Class<T> type, PipelineMetrics pipelineMetrics) {
+        this.type = type;
+        this.writer = SMILE_MAPPER.writerFor(type);
+        this.reader = SMILE_MAPPER.readerFor(type);
+        this.legacyReader = JSON_MAPPER.readerFor(type);
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        // nothing to configure; the record type is fixed at construction
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(FORMAT_VERSION);
+            writer.writeValue(out, data);
+            byte[] bytes = out.toByteArray();
+            record(topic, PipelineMetrics.Outcome.OK, start);
+            return bytes;
+        } catch (IOException e) {
+            record(topic, PipelineMetrics.Outcome.ERROR, start);
+            throw new SerializationException("Failed to serialize " + type.getSimpleName() + " for topic " + topic, e);
+        }
+    }
+
+    private void record(String topic, PipelineMetrics.Outcome outcome, long start) {
+        if (pipelineMetrics != null && topic != null) {
+            serializationMeters.computeIfAbsent(topic, pipelineMetrics::serialization).record(outcome, start);
+        }
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try {
+            if (data[0] == FORMAT_VERSION) {
+                return reader.readValue(data, 1, data.length - 1);
+            }
+            if (data[0] == '{') {
+                return legacyReader.readValue(data);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Failed to deserialize " + type.getSimpleName() + " from topic " + topic, e);
+        }
+        throw new SerializationException("Unknown format version " + data[0] + " of " + type.getSimpleName() + " on topic " + topic);
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return this;
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release; readers and writers are shared
+    }
+}
@@ -0,0 +1,224 @@
+package debezium.kafka;
+
+import debezium.component.PipelineMetrics;
+import debezium.component.WriteBehindBuffer;
+import debezium.config.WriteBehindProperties;
+import debezium.enums.KTopic;
+import debezium.model.Contribution;
+import debezium.model.Invoice;
+import debezium.service.ContributionService;
+import debezium.service.InvoiceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Persists the processed records of the listener and acknowledges each poll once all of its rows are committed.
+ * <p>
+ * With write-behind enabled, invoices and contributions go to a {@link WriteBehindBuffer} each, which COPYs them
+ * in batches in the background. A poll is acknowledged once its rows of both tables are written, and polls are
+ * acknowledged strictly in order, so a committed offset never passes a row that is not in the database. While a
+ * buffer is full the listener waits in {@link #write}, so the consumer stops polling. Both buffers are flushed
+ * before partitions are revoked, so that their offsets are committed before another consumer takes over; rows not
+ * written within {@code revoke-timeout} are dropped unacknowledged instead of holding up the rebalance.
+ * Transient failures are retried until they succeed and never acknowledged before, so delivery stays at least once:
+ * rows written but not yet acknowledged are written again after a crash. Rows the database refuses for their content
+ * are dead-lettered, and the rest of their poll is acknowledged.
+ * <p>
+ * Registered as the listener container's rebalance listener by Spring Boot.
+ */
+@Slf4j
+@Component
+public class ProcessedRecordSink implements ConsumerAwareRebalanceListener, DisposableBean {
+    private static final String STAGE = "write-behind";
+    private final InvoiceService invoiceService;
+    private final ContributionService contributionService;
+    private final PipelineMetrics.StageMeters invoicePersistenceMeters;
+    private final PipelineMetrics.StageMeters contributionPersistenceMeters;
+    private final WriteBehindBuffer<Invoice> invoices;
+    private final WriteBehindBuffer<Contribution> contributions;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final Duration revokeTimeout;
+    //note: acknowledgements waiting for their rows, oldest poll first
+    private final ArrayDeque<PendingPoll> pendingPolls = new ArrayDeque<>();
+
+    public ProcessedRecordSink(InvoiceService invoiceService, ContributionService contributionService,
+                               WriteBehindProperties properties, DeadLetterPublisher deadLetterPublisher,
+                               PipelineMetrics pipelineMetrics, MeterRegistry registry) {
+        this.invoiceService = invoiceService;
+        this.contributionService = contributionService;
+        this.deadLetterPublisher = deadLetterPublisher;
+        this.revokeTimeout = properties.getRevokeTimeout();
+        this.invoicePersistenceMeters = pipelineMetrics.persistence(KTopic.PROCESSED_INVOICES_TOPIC.getTopicName());
+        this.contributionPersistenceMeters = pipelineMetrics.persistence(KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName());
+        if (properties.isEnabled()) {
+            this.invoices = new WriteBehindBuffer<>("invoices", properties, invoiceService::processInvoices,
+                    (invoice, e) -> deadLetter(KTopic.PROCESSED_INVOICES_TOPIC, invoice, e), invoicePersistenceMeters);
+            this.contributions = new WriteBehindBuffer<>("contributions", properties, contributionService::processContributions,
+                    (contribution, e) -> deadLetter(KTopic.PROCESSED_CONTRIBUTIONS_TOPIC, contribution, e),
+                    contributionPersistenceMeters);
+            Gauge.builder(PipelineMetrics.PERSISTENCE + ".buffered", invoices, WriteBehindBuffer::bufferedRows)
+                    .tag("topic", KTopic.PROCESSED_INVOICES_TOPIC.getTopicName()).register(registry);
+            Gauge.builder(PipelineMetrics.PERSISTENCE + ".buffered", contributions, WriteBehindBuffer::bufferedRows)
+                    .tag("topic", KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName()).register(registry);
+        } else {
+            this.invoices = null;
+            this.contributions = null;
+        }
+    }
+
+    /**
+     * Persists the decoded records of one poll and acknowledges the poll once they are committed.
+     *
+     * @param invoices       The processed invoices of the poll.
+     * @param contributions  The processed contributions of the poll.
+     * @param acknowledgment Commits the offsets of the poll.
+     * @throws InterruptedException if interrupted while waiting for room in a buffer.
+     */
+    public void write(List<Invoice> invoices, List<Contribution> contributions, Acknowledgment acknowledgment)
+            throws InterruptedException {
+        if (this.invoices == null) {
+            persist(invoices, invoiceService::processInvoices, invoicePersistenceMeters);
+            persist(contributions, contributionService::processContributions, contributionPersistenceMeters);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        int tables = (invoices.isEmpty() ? 0 : 1) + (contributions.isEmpty() ? 0 : 1);
+        PendingPoll poll = new PendingPoll(acknowledgment, tables);
+        synchronized (pendingPolls) {
+            pendingPolls.add(poll);
+        }
+        if (!invoices.isEmpty()) {
+            this.invoices.add(invoices, () -> written(poll));
+        }
+        if (!contributions.isEmpty()) {
+            this.contributions.add(contributions, () -> written(poll));
+        }
+        if (tables == 0) {
+            acknowledgeWritten();
+        }
+    }
+
+    /**
+     * Writes the buffered rows before the container commits the offsets of the revoked partitions. While the
+     * database is down this waits for it up to {@code revoke-timeout}, then drops the unwritten rows without
+     * acknowledging them, so that they are delivered again, and rewinds the partitions kept to their committed
+     * offsets, as a later poll of theirs must not commit past the dropped rows.
+     */
+    @Override
+    public void onPartitionsRevokedBeforeCommit(org.apache.kafka.clients.consumer.Consumer<?, ?> consumer,
+                                                Collection<TopicPartition> partitions) {
+        if (flush()) {
+            return;
+        }
+        int dropped = invoices.discard() + contributions.discard();
+        synchronized (pendingPolls) {
+            pendingPolls.clear();
+        }
+        log.warn("Dropped {} buffered rows not written within {}; their records will be delivered again", dropped, revokeTimeout);
+        rewind(consumer, partitions);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (invoices != null) {
+            invoices.close();
+            contributions.close();
+        }
+    }
+
+    /**
+     * @return false if some buffered rows were not written within the revoke timeout.
+     */
+    private boolean flush() {
+        if (invoices == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + revokeTimeout.toNanos();
+        try {
+            return invoices.flush(revokeTimeout)
+                    && contributions.flush(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while writing buffered rows; their records will be delivered again");
+            return false;
+        }
+    }
+
+    //note: all partitions are revoked with the default eager assignors, so this only matters for cooperative ones
+    private static void rewind(org.apache.kafka.clients.consumer.Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        Set<TopicPartition> kept = new HashSet<>(consumer.assignment());
+        kept.removeAll(revoked);
+        if (kept.isEmpty()) {
+            return;
+        }
+        consumer.committed(kept).forEach((partition, offset) -> {
+            if (offset != null) {
+                consumer.seek(partition, offset);
+            } else {
+                consumer.seekToBeginning(List.of(partition));
+            }
+        });
+    }
+
+    private <T> void deadLetter(KTopic topic, T row, RuntimeException e) {
+        deadLetterPublisher.publish(STAGE, topic.getTopicName(), -1, -1, null, row, e);
+    }
+
+    private void written(PendingPoll poll) {
+        synchronized (pendingPolls) {
+            poll.remaining--;
+        }
+        acknowledgeWritten();
+    }
+
+    //note: acknowledges from the head only, so that a poll never commits before an earlier one
+    private void acknowledgeWritten() {
+        synchronized (pendingPolls) {
+            while (!pendingPolls.isEmpty() && pendingPolls.peek().remaining == 0) {
+                pendingPolls.poll().acknowledgment.acknowledge();
+            }
+        }
+    }
+
+    private static <T> void persist(List<T> values, Consumer<List<T>> processor, PipelineMetrics.StageMeters meters) {
+        if (values.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            processor.accept(values);
+            meters.record(PipelineMetrics.Outcome.OK, start);
+        } catch (RuntimeException e) {
+            meters.record(PipelineMetrics.Outcome.ERROR, start);
+            throw e;
+        }
+    }
+
+    /**
+     * The acknowledgment of a poll and the number of its tables not yet written.
+     */
+    private static final class PendingPoll {
+        private final Acknowledgment acknowledgment;
+        private int remaining;
+
+        private PendingPoll(Acknowledgment acknowledgment, int remaining) {
+            this.acknowledgment = acknowledgment;
+            this.remaining = remaining;
+        }
+    }
+}
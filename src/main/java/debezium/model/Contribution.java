@@ -1,28 +1,42 @@
 package debezium.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import debezium.service.FixedPoint;
+import debezium.service.UtilService;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "contributions", schema = "fraud")
+@Table(name = "contributions", schema = "fraud",
+        indexes = @Index(name = "flagged_contributions_member_period_idx", columnList = "member_id, sponsor_id, type, period desc"))
 public class Contribution implements Serializable {
+    //note: ObjectMapper is thread-safe and expensive to build, so one instance is shared
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "contribution_seq")
+    // pooled allocation: one sequence call per 50 ids, so inserts can be JDBC-batched
+    @SequenceGenerator(name = "contribution_seq", sequenceName = "contribution_seq", schema = "fraud", allocationSize = 50)
     private Long id;
 
     private Long recordId;
@@ -36,6 +50,8 @@ public class Contribution implements Serializable {
     private String type;
     private String status;
     private String month;
+    //note: months since year 0, see UtilService.toPeriod; decoded once so rules compare ints, and indexed
+    private Integer period;
     private String ssno;
 
     @Column(length = 2000)
@@ -44,20 +60,55 @@ public class Contribution implements Serializable {
     @CreationTimestamp
     private LocalDateTime createdAt;
 
+    //note: ee + er in FixedPoint units as decoded from the change event, so rules need not add BigDecimals
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private long decodedTotal = FixedPoint.NONE;
+
+    /**
+     * Returns the sum of the employee and employer contributions in {@link FixedPoint} units.
+     *
+     * @return The total, or {@link FixedPoint#NONE} if it does not fit.
+     */
+    public long fixedTotal() {
+        if (decodedTotal != FixedPoint.NONE) {
+            return decodedTotal;
+        }
+        return FixedPoint.add(FixedPoint.of(ee), FixedPoint.of(er));
+    }
+
+    /**
+     * Returns the contribution period, computing it from year and month for contributions built without one.
+     *
+     * @return The period as months since year 0, see {@link UtilService#toPeriod}.
+     * @throws IllegalArgumentException if the period is unknown and the month is not valid.
+     */
+    public int period() {
+        return period != null ? period : UtilService.toPeriod(year, month);
+    }
+
+    /**
+     * Reads a contribution from its JSON.
+     *
+     * @param string The JSON.
+     * @return The contribution.
+     * @throws UncheckedIOException if the JSON is not a valid contribution.
+     */
     public static Contribution fromJson(String string) {
         try {
-            return new ObjectMapper().readValue(string, Contribution.class);
-        } catch (JsonProcessingException ignored) {
-            return null;
+            return MAPPER.readValue(string, Contribution.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return MAPPER.writeValueAsString(this);
         } catch (JsonProcessingException ignored) {
-            return null;
+            return super.toString();
         }
     }
 }
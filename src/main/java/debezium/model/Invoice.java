@@ -1,44 +1,89 @@
 package debezium.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import debezium.service.FixedPoint;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
 
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @Entity
 @Table(name = "invoices", schema = "fraud")
 public class Invoice implements Serializable {
+    //note: ObjectMapper is thread-safe and expensive to build, so one instance is shared
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_seq")
+    // pooled allocation: one sequence call per 50 ids, so inserts can be JDBC-batched
+    @SequenceGenerator(name = "invoice_seq", sequenceName = "invoice_seq", schema = "fraud", allocationSize = 50)
     private Long id;
     private Long recordId;
+    private Long customerId;
     private Double totalAmount;
 
+    @Column(length = 2000)
+    private String reasonFlagged;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    //note: the amount in FixedPoint units as decoded from the change event, exact unlike totalAmount
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private long decodedAmount = FixedPoint.NONE;
+
+    /**
+     * Returns the invoice amount in {@link FixedPoint} units.
+     *
+     * @return The amount, or 0 if there is none.
+     */
+    public long fixedAmount() {
+        if (decodedAmount != FixedPoint.NONE) {
+            return decodedAmount;
+        }
+        return totalAmount == null ? 0 : FixedPoint.ofSaturated(BigDecimal.valueOf(totalAmount));
+    }
+
+    /**
+     * Reads a invoice from its JSON.
+     *
+     * @param string The JSON.
+     * @return The invoice.
+     * @throws UncheckedIOException if the JSON is not a valid invoice.
+     */
     public static Invoice fromJson(String string) {
         try {
-            return new ObjectMapper().readValue(string, Invoice.class);
+            return MAPPER.readValue(string, Invoice.class);
         } catch (JsonProcessingException e) {
-            e.printStackTrace(System.err);
-            return null;
+            throw new UncheckedIOException(e);
         }
     }
 
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace(System.err);
-            return null; // Handle the exception as needed
+            return MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException ignored) {
+            return super.toString();
         }
     }
 }
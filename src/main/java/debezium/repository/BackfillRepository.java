@@ -0,0 +1,124 @@
+package debezium.repository;
+
+import debezium.model.Contribution;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class BackfillRepository {
+    private static final String CONTRIBUTIONS = "select c.id, c.member_id, c.sponsor_id, c.type, c.year, c.month, c.period, c.ee, c.er, c.tot, c.ssno, c.status\n" +
+            "from public.contributions c\n" +
+            "where c.member_id is not null\n";
+    //note: the reverse of the (member_id, sponsor_id, type, period desc) index order, so the index is scanned backwards
+    // and each member's rows arrive together, oldest period first
+    private static final String ORDER = "order by c.member_id desc, c.sponsor_id desc, c.type desc, c.period, c.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BackfillRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The progress of a backfill.
+     *
+     * @param lastMemberId The last member whose contributions were all analysed, or null if none were.
+     * @param rowsRead     The number of contributions analysed.
+     * @param rowsFlagged  The number of contributions flagged.
+     * @param completed    Whether the backfill analysed all contributions.
+     */
+    public record Checkpoint(Long lastMemberId, long rowsRead, long rowsFlagged, boolean completed) {
+    }
+
+    /**
+     * The number and sum of the contribution totals of one contribution type and sponsor.
+     */
+    public record SegmentTotal(String type, Long sponsorId, long count, BigDecimal sum) {
+    }
+
+    /**
+     * Streams the contributions through a server-side cursor, member by member in descending member ID order,
+     * each member's contributions ordered by sponsor, type and period. The transaction keeps the cursor open;
+     * without it the driver would fetch the whole result at once.
+     *
+     * @param beforeMemberId Only members with a lower ID are read, or null to read all members.
+     * @param fetchSize      The number of rows fetched per round trip.
+     * @param consumer       Receives each contribution.
+     */
+    @Transactional(readOnly = true)
+    public void streamContributions(Long beforeMemberId, int fetchSize, Consumer<Contribution> consumer) {
+        String sql = beforeMemberId == null ? CONTRIBUTIONS + ORDER : CONTRIBUTIONS + "  and c.member_id < ?\n" + ORDER;
+        jdbcTemplate.query(sql, ps -> {
+            ps.setFetchSize(fetchSize);
+            if (beforeMemberId != null) {
+                ps.setLong(1, beforeMemberId);
+            }
+        }, rs -> {
+            Contribution contribution = new Contribution();
+            contribution.setRecordId(rs.getLong("id"));
+            contribution.setMemberId(rs.getLong("member_id"));
+            contribution.setSponsorId(rs.getObject("sponsor_id", Long.class));
+            contribution.setType(rs.getString("type"));
+            contribution.setYear(rs.getInt("year"));
+            contribution.setMonth(rs.getString("month"));
+            contribution.setPeriod(rs.getObject("period", Integer.class));
+            contribution.setEe(rs.getBigDecimal("ee"));
+            contribution.setEr(rs.getBigDecimal("er"));
+            contribution.setTotal(rs.getBigDecimal("tot"));
+            contribution.setSsno(rs.getString("ssno"));
+            contribution.setStatus(rs.getString("status"));
+            consumer.accept(contribution);
+        });
+    }
+
+    /**
+     * Retrieves the number and sum of contribution totals per contribution type and sponsor.
+     *
+     * @return The totals of every type and sponsor.
+     */
+    public List<SegmentTotal> getSegmentTotals() {
+        return jdbcTemplate.query("select c.type, c.sponsor_id, count(*) as samples, sum(coalesce(c.ee, 0) + coalesce(c.er, 0)) as total_sum\n" +
+                        "from public.contributions c\n" +
+                        "group by c.type, c.sponsor_id",
+                (rs, rowNum) -> new SegmentTotal(rs.getString("type"), rs.getObject("sponsor_id", Long.class),
+                        rs.getLong("samples"), rs.getBigDecimal("total_sum")));
+    }
+
+    /**
+     * Retrieves the progress of a backfill.
+     *
+     * @param name The name of the backfill.
+     * @return The checkpoint, or null if the backfill never ran.
+     */
+    public Checkpoint findCheckpoint(String name) {
+        List<Checkpoint> checkpoints = jdbcTemplate.query("select last_member_id, rows_read, rows_flagged, completed\n" +
+                        "from fraud.backfill_checkpoint\n" +
+                        "where name = ?",
+                (rs, rowNum) -> new Checkpoint(rs.getObject("last_member_id", Long.class), rs.getLong("rows_read"),
+                        rs.getLong("rows_flagged"), rs.getBoolean("completed")),
+                name);
+        return checkpoints.isEmpty() ? null : checkpoints.get(0);
+    }
+
+    /**
+     * Records the progress of a backfill.
+     *
+     * @param name       The name of the backfill.
+     * @param checkpoint The progress.
+     */
+    public void saveCheckpoint(String name, Checkpoint checkpoint) {
+        jdbcTemplate.update("insert into fraud.backfill_checkpoint (name, last_member_id, rows_read, rows_flagged, completed, updated_at)\n" +
+                        "values (?, ?, ?, ?, ?, now())\n" +
+                        "on conflict (name) do update set last_member_id = excluded.last_member_id,\n" +
+                        "                                 rows_read      = excluded.rows_read,\n" +
+                        "                                 rows_flagged   = excluded.rows_flagged,\n" +
+                        "                                 completed      = excluded.completed,\n" +
+                        "                                 updated_at     = excluded.updated_at",
+                name, checkpoint.lastMemberId(), checkpoint.rowsRead(), checkpoint.rowsFlagged(), checkpoint.completed());
+    }
+}
@@ -0,0 +1,207 @@
+package debezium.repository;
+
+import debezium.dto.FlaggedFilter;
+import debezium.dto.KeysetCursor;
+import debezium.model.Contribution;
+import debezium.model.Invoice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads flagged contributions and invoices for the REST API, newest first, by keyset pagination on
+ * (created_at, id): a page starts below the last row of the previous one, so reading a page costs the same at any
+ * depth, unlike OFFSET, which reads and discards every row before the page. The filters and the order are served by
+ * the indexes of db/flagged-indexes.sql.
+ */
+@Repository
+public class FlaggedRepository {
+    private static final String CONTRIBUTIONS = "select f.id, f.record_id, f.member_id, f.sponsor_id, f.year, f.month, f.period, f.type, f.status,\n" +
+            "       f.ee, f.er, f.total, f.ssno, f.reason_flagged, f.created_at\n" +
+            "from fraud.contributions f\n" +
+            "where true\n";
+    private static final String INVOICES = "select f.id, f.record_id, f.customer_id, f.total_amount, f.reason_flagged, f.created_at\n" +
+            "from fraud.invoices f\n" +
+            "where true\n";
+    //note: a row comparison, which Postgres answers with one range scan of a (..., created_at, id) index
+    private static final String AFTER = "  and (f.created_at, f.id) < (?, ?)\n";
+    private static final String ORDER = "order by f.created_at desc, f.id desc\n";
+
+    private static final RowMapper<Contribution> CONTRIBUTION_MAPPER = (rs, rowNum) -> {
+        Contribution contribution = new Contribution();
+        contribution.setId(rs.getLong("id"));
+        contribution.setRecordId(rs.getObject("record_id", Long.class));
+        contribution.setMemberId(rs.getObject("member_id", Long.class));
+        contribution.setSponsorId(rs.getObject("sponsor_id", Long.class));
+        contribution.setYear(rs.getInt("year"));
+        contribution.setMonth(rs.getString("month"));
+        contribution.setPeriod(rs.getObject("period", Integer.class));
+        contribution.setType(rs.getString("type"));
+        contribution.setStatus(rs.getString("status"));
+        contribution.setEe(rs.getBigDecimal("ee"));
+        contribution.setEr(rs.getBigDecimal("er"));
+        contribution.setTotal(rs.getBigDecimal("total"));
+        contribution.setSsno(rs.getString("ssno"));
+        contribution.setReasonFlagged(rs.getString("reason_flagged"));
+        contribution.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        return contribution;
+    };
+
+    private static final RowMapper<Invoice> INVOICE_MAPPER = (rs, rowNum) -> {
+        Invoice invoice = new Invoice();
+        invoice.setId(rs.getLong("id"));
+        invoice.setRecordId(rs.getObject("record_id", Long.class));
+        invoice.setCustomerId(rs.getObject("customer_id", Long.class));
+        invoice.setTotalAmount(rs.getObject("total_amount", Double.class));
+        invoice.setReasonFlagged(rs.getString("reason_flagged"));
+        invoice.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        return invoice;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FlaggedRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reads one page of flagged contributions.
+     *
+     * @param filter The filters by member, sponsor, period and reason.
+     * @param after  The cursor of the page, or null for the first page.
+     * @param limit  The maximum number of rows.
+     * @return The contributions, newest first.
+     */
+    public List<Contribution> findContributions(FlaggedFilter filter, KeysetCursor after, int limit) {
+        Query query = contributionQuery(filter, after);
+        query.args.add(limit);
+        return jdbcTemplate.query(query.sql() + "limit ?", query::bind, CONTRIBUTION_MAPPER);
+    }
+
+    /**
+     * Streams all matching flagged contributions through a server-side cursor. The transaction keeps the cursor
+     * open; without it the driver would fetch the whole result at once.
+     *
+     * @param filter    The filters by member, sponsor, period and reason.
+     * @param after     Only contributions after this cursor, or null for all.
+     * @param fetchSize The number of rows fetched per round trip.
+     * @param consumer  Receives each contribution, newest first.
+     */
+    @Transactional(readOnly = true)
+    public void streamContributions(FlaggedFilter filter, KeysetCursor after, int fetchSize, Consumer<Contribution> consumer) {
+        Query query = contributionQuery(filter, after);
+        jdbcTemplate.query(query.sql(), ps -> {
+            ps.setFetchSize(fetchSize);
+            query.bind(ps);
+        }, rs -> {
+            consumer.accept(CONTRIBUTION_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    /**
+     * Reads one page of flagged invoices.
+     *
+     * @param filter The filters by customer and reason.
+     * @param after  The cursor of the page, or null for the first page.
+     * @param limit  The maximum number of rows.
+     * @return The invoices, newest first.
+     */
+    public List<Invoice> findInvoices(FlaggedFilter filter, KeysetCursor after, int limit) {
+        Query query = invoiceQuery(filter, after);
+        query.args.add(limit);
+        return jdbcTemplate.query(query.sql() + "limit ?", query::bind, INVOICE_MAPPER);
+    }
+
+    /**
+     * Streams all matching flagged invoices through a server-side cursor.
+     *
+     * @param filter    The filters by customer and reason.
+     * @param after     Only invoices after this cursor, or null for all.
+     * @param fetchSize The number of rows fetched per round trip.
+     * @param consumer  Receives each invoice, newest first.
+     */
+    @Transactional(readOnly = true)
+    public void streamInvoices(FlaggedFilter filter, KeysetCursor after, int fetchSize, Consumer<Invoice> consumer) {
+        Query query = invoiceQuery(filter, after);
+        jdbcTemplate.query(query.sql(), ps -> {
+            ps.setFetchSize(fetchSize);
+            query.bind(ps);
+        }, rs -> {
+            consumer.accept(INVOICE_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    private static Query contributionQuery(FlaggedFilter filter, KeysetCursor after) {
+        Query query = new Query(CONTRIBUTIONS);
+        query.where("  and f.member_id = ?\n", filter.memberId());
+        query.where("  and f.sponsor_id = ?\n", filter.sponsorId());
+        query.where("  and f.period = ?\n", filter.period());
+        query.where("  and f.reason_flagged ilike ?\n", contains(filter.reason()));
+        query.after(after);
+        return query;
+    }
+
+    private static Query invoiceQuery(FlaggedFilter filter, KeysetCursor after) {
+        Query query = new Query(INVOICES);
+        query.where("  and f.customer_id = ?\n", filter.customerId());
+        query.where("  and f.reason_flagged ilike ?\n", contains(filter.reason()));
+        query.after(after);
+        return query;
+    }
+
+    /**
+     * @return An ILIKE pattern matching the text anywhere, with its wildcards escaped, or null for no text.
+     */
+    private static String contains(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * A query built from the conditions of the filters that are set, and its arguments.
+     */
+    private static final class Query {
+        private final StringBuilder sql;
+        private final List<Object> args = new ArrayList<>();
+
+        private Query(String select) {
+            this.sql = new StringBuilder(select);
+        }
+
+        private void where(String condition, Object arg) {
+            if (arg != null) {
+                sql.append(condition);
+                args.add(arg);
+            }
+        }
+
+        private void after(KeysetCursor cursor) {
+            if (cursor != null) {
+                sql.append(AFTER);
+                args.add(cursor.createdAt());
+                args.add(cursor.id());
+            }
+            sql.append(ORDER);
+        }
+
+        private String sql() {
+            return sql.toString();
+        }
+
+        private void bind(PreparedStatement ps) throws SQLException {
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+        }
+    }
+}
@@ -1,67 +1,153 @@
 package debezium.repository;
 
+import debezium.component.PipelineMetrics;
+import debezium.component.RateLimitedLogger;
+import debezium.config.FraudProperties;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import jakarta.persistence.Tuple;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.util.List;
 
+@Slf4j
 @Repository
 public class NativeRepository {
+    private static final String QUERY_TIMEOUT = "jakarta.persistence.query.timeout";
 
     @PersistenceContext
     private EntityManager em;
 
+    private final PipelineMetrics.StageMeters priorContributionsMeters;
+    private final PipelineMetrics.StageMeters contributionHistoryMeters;
+    private final PipelineMetrics.StageMeters contributionHistoriesMeters;
+    private final PipelineMetrics.StageMeters averageAllContributionsMeters;
+    //note: per-record lookups are cancelled by the database after this, see fraud.lookups.query-timeout
+    private final long lookupTimeoutMillis;
+    //note: a database outage fails every lookup, so failures are logged at a limited rate and without stack traces
+    private final RateLimitedLogger failureLog = new RateLimitedLogger(log, Duration.ofSeconds(10));
+
+    public NativeRepository(PipelineMetrics pipelineMetrics, FraudProperties fraudProperties) {
+        this.lookupTimeoutMillis = fraudProperties.getLookups().getQueryTimeout().toMillis();
+        this.priorContributionsMeters = pipelineMetrics.query("getPriorContributions");
+        this.contributionHistoryMeters = pipelineMetrics.query("getContributionHistory");
+        this.contributionHistoriesMeters = pipelineMetrics.query("getContributionHistories");
+        this.averageAllContributionsMeters = pipelineMetrics.query("getAverageAllContributions");
+    }
 
     /**
-     * Retrieves the last X contributions for a given contribution ID.
+     * Retrieves the contributions of the same member, sponsor and type before a given contribution, newest first,
+     * in one round trip. The lookup walks the (member_id, sponsor_id, type, period) index backwards from the
+     * contribution's period, so its cost depends on the number of rows returned, not on the member's history length.
+     * Every row also carries the number of rows returned ({@code samples}) and the sum of their ee and er
+     * ({@code total_sum}).
      *
-     * @param contributionId The ID of the contribution to retrieve contributions for.
-     * @param numberOfMonths The number of months of contributions to retrieve.
+     * @param contributionId The ID of the contribution in public.contributions.
+     * @param numberOfMonths The maximum number of contributions to retrieve.
      * @return A list of Tuples representing the contributions, or null if an error occurs.
      */
-    public List<Tuple> getXContributions(Long contributionId, int numberOfMonths) {
+    public List<Tuple> getPriorContributions(Long contributionId, int numberOfMonths) {
+        long start = System.nanoTime();
         try {
-            Query query = em.createNativeQuery("select c.id, c.ee, c.er, c.tot\n" +
+            Query query = em.createNativeQuery("select p.id, p.ee, p.er, p.tot, p.year, p.month, p.period,\n" +
+                    "       count(*) over ()                                  as samples,\n" +
+                    "       sum(coalesce(p.ee, 0) + coalesce(p.er, 0)) over () as total_sum\n" +
                     "from public.contributions c\n" +
-                    "         left join public.contributions c2 on c2.member_id = c.member_id\n" +
-                    "where c.sponsor_id = c2.sponsor_id\n" +
-                    "  and c.type = c2.type\n" +
-                    "  and date(concat_ws('-', c.year, c.month, 1)) < date(concat_ws('-', c2.year, c2.month, 1))\n" +
-                    "  and c2.id = :contributionId\n" +
-                    "order by date(concat_ws('-', c.year, c.month, 1)) desc", Tuple.class);
+                    "         cross join lateral (select c2.id, c2.ee, c2.er, c2.tot, c2.year, c2.month, c2.period\n" +
+                    "                             from public.contributions c2\n" +
+                    "                             where c2.member_id = c.member_id\n" +
+                    "                               and c2.sponsor_id = c.sponsor_id\n" +
+                    "                               and c2.type = c.type\n" +
+                    "                               and c2.period < c.period\n" +
+                    "                             order by c2.period desc\n" +
+                    "                             limit :numberOfMonths) p\n" +
+                    "where c.id = :contributionId\n" +
+                    "order by p.period desc", Tuple.class);
             query.setParameter("contributionId", contributionId);
-            query.setMaxResults(numberOfMonths);
-            return query.getResultList();
+            query.setParameter("numberOfMonths", numberOfMonths);
+            query.setHint(QUERY_TIMEOUT, lookupTimeoutMillis);
+            List<Tuple> result = query.getResultList();
+            priorContributionsMeters.record(result.isEmpty() ? PipelineMetrics.Outcome.SKIPPED : PipelineMetrics.Outcome.OK, start);
+            return result;
         } catch (Exception e) {
-            e.printStackTrace(System.err);
+            priorContributionsMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            failureLog.warn("getPriorContributions", e, "Query getPriorContributions failed");
             return null;
         }
     }
 
     /**
-     * Retrieves the previous contribution for a given contribution ID.
+     * Retrieves the latest contributions of a member for a sponsor and contribution type, newest first.
      *
-     * @param contributionId The ID of the contribution to retrieve the previous contribution for.
-     * @return A Tuple representing the previous contribution, or null if no previous contribution exists.
+     * @param memberId  The ID of the member.
+     * @param sponsorId The ID of the sponsor.
+     * @param type      The contribution type.
+     * @param limit     The maximum number of contributions to retrieve.
+     * @return A list of Tuples representing the contributions, or null if an error occurs.
      */
-    public Tuple getPreviousContribution(Long contributionId) {
+    public List<Tuple> getContributionHistory(Long memberId, Long sponsorId, String type, int limit) {
+        long start = System.nanoTime();
         try {
-            Query query = em.createNativeQuery("select c.id, c.ee, c.er, c.tot,c.year,c.month\n" +
+            Query query = em.createNativeQuery("select c.id, c.ee, c.er, c.year, c.month, c.period\n" +
                     "from public.contributions c\n" +
-                    "         left join public.contributions c2 on c2.member_id = c.member_id\n" +
-                    "where c.sponsor_id = c2.sponsor_id\n" +
-                    "  and c.type = c2.type\n" +
-                    "  and date(concat_ws('-', c.year, c.month, 1)) < date(concat_ws('-', c2.year, c2.month, 1))\n" +
-                    "  and c2.id = :contributionId\n" +
-                    "order by date(concat_ws('-', c.year, c.month, 1)) desc", Tuple.class);
-            query.setParameter("contributionId", contributionId);
-            query.setMaxResults(1);
-            return (Tuple) query.getSingleResult();
+                    "where c.member_id = :memberId\n" +
+                    "  and c.sponsor_id = :sponsorId\n" +
+                    "  and c.type = :type\n" +
+                    "order by c.period desc", Tuple.class);
+            query.setParameter("memberId", memberId);
+            query.setParameter("sponsorId", sponsorId);
+            query.setParameter("type", type);
+            query.setMaxResults(limit);
+            query.setHint(QUERY_TIMEOUT, lookupTimeoutMillis);
+            List<Tuple> result = query.getResultList();
+            contributionHistoryMeters.record(PipelineMetrics.Outcome.OK, start);
+            return result;
+        } catch (Exception e) {
+            contributionHistoryMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            failureLog.warn("getContributionHistory", e, "Query getContributionHistory failed");
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the latest contributions of many members at once, newest first per member, sponsor and type.
+     * The three arrays are zipped into (member, sponsor, type) keys, and each key reads at most {@code limit} rows
+     * from the (member_id, sponsor_id, type, period) index, so one round trip serves a whole batch of records.
+     *
+     * @param memberIds  The IDs of the members.
+     * @param sponsorIds The IDs of the sponsors, one per member ID.
+     * @param types      The contribution types, one per member ID.
+     * @param limit      The maximum number of contributions to retrieve per key.
+     * @return A list of Tuples representing the contributions with their key columns, or null if an error occurs.
+     */
+    public List<Tuple> getContributionHistories(Long[] memberIds, Long[] sponsorIds, String[] types, int limit) {
+        long start = System.nanoTime();
+        try {
+            Query query = em.createNativeQuery("select k.member_id, k.sponsor_id, k.type, h.id, h.ee, h.er, h.year, h.month, h.period\n" +
+                    "from unnest(cast(:memberIds as bigint[]), cast(:sponsorIds as bigint[]), cast(:types as text[]))\n" +
+                    "         as k(member_id, sponsor_id, type)\n" +
+                    "         cross join lateral (select c.id, c.ee, c.er, c.year, c.month, c.period\n" +
+                    "                             from public.contributions c\n" +
+                    "                             where c.member_id = k.member_id\n" +
+                    "                               and c.sponsor_id = k.sponsor_id\n" +
+                    "                               and c.type = k.type\n" +
+                    "                             order by c.period desc\n" +
+                    "                             limit :limit) h\n" +
+                    "order by k.member_id, k.sponsor_id, k.type, h.period desc", Tuple.class);
+            query.setParameter("memberIds", memberIds);
+            query.setParameter("sponsorIds", sponsorIds);
+            query.setParameter("types", types);
+            query.setParameter("limit", limit);
+            List<Tuple> result = query.getResultList();
+            contributionHistoriesMeters.record(PipelineMetrics.Outcome.OK, start);
+            return result;
         } catch (Exception e) {
-            e.printStackTrace(System.err);
+            contributionHistoriesMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            failureLog.warn("getContributionHistories", e, "Query getContributionHistories failed");
             return null;
         }
     }
@@ -72,11 +158,19 @@ public class NativeRepository {
      * @return A Tuple representing the average contributions, or null if an error occurs.
      */
     public Tuple getAverageAllContributions() {
+        long start = System.nanoTime();
         try {
             Query query = em.createNativeQuery("select * from mv_ee_er_avg", Tuple.class);
-            return (Tuple) query.getSingleResult();
+            query.setHint(QUERY_TIMEOUT, lookupTimeoutMillis);
+            Tuple result = (Tuple) query.getSingleResult();
+            averageAllContributionsMeters.record(PipelineMetrics.Outcome.OK, start);
+            return result;
+        } catch (NoResultException e) {
+            averageAllContributionsMeters.record(PipelineMetrics.Outcome.SKIPPED, start);
+            return null;
         } catch (Exception e) {
-            e.printStackTrace(System.err);
+            averageAllContributionsMeters.record(PipelineMetrics.Outcome.ERROR, start);
+            failureLog.warn("getAverageAllContributions", e, "Query getAverageAllContributions failed");
             return null;
         }
     }
@@ -0,0 +1,152 @@
+package debezium.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Encodes rows in the binary format of PostgreSQL's {@code COPY ... FROM STDIN (FORMAT binary)}: a signature and
+ * header, then per row the number of fields and every field as its length and its value in the type's binary
+ * send format, and a trailer. Fields must be written in the order and with the types of the COPY column list.
+ */
+final class PgBinaryCopy {
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int NUMERIC_POSITIVE = 0x0000;
+    private static final int NUMERIC_NEGATIVE = 0x4000;
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+
+    PgBinaryCopy(int expectedRows) {
+        this.bytes = new ByteArrayOutputStream(Math.max(64, expectedRows * 256));
+        this.out = new DataOutputStream(bytes);
+        try {
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags: no OIDs
+            out.writeInt(0); // no header extension
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void startRow(int fields) throws IOException {
+        out.writeShort(fields);
+    }
+
+    void writeBigint(Long value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    void writeInteger(Integer value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    void writeDouble(Double value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(8);
+        out.writeDouble(value);
+    }
+
+    void writeText(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Writes a timestamp without time zone, as microseconds since 2000-01-01.
+     */
+    void writeTimestamp(LocalDateTime value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value));
+    }
+
+    /**
+     * Writes a numeric as its base 10000 digits: the digit count, the weight of the first digit, the sign, the
+     * number of decimal digits after the point, then the digits without leading or trailing zero digits.
+     */
+    void writeNumeric(BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        BigDecimal abs = value.abs();
+        if (abs.scale() < 0) {
+            abs = abs.setScale(0, RoundingMode.UNNECESSARY);
+        }
+        int scale = abs.scale();
+        String unscaled = abs.unscaledValue().toString();
+        int integerLength = unscaled.length() - scale;
+        String integerPart = integerLength > 0 ? unscaled.substring(0, integerLength) : "";
+        String fractionPart = integerLength > 0 ? unscaled.substring(integerLength) : "0".repeat(-integerLength) + unscaled;
+        // pad both parts to whole base 10000 digits around the decimal point
+        String digits = "0".repeat((4 - integerPart.length() % 4) % 4) + integerPart
+                + fractionPart + "0".repeat((4 - fractionPart.length() % 4) % 4);
+
+        int groups = digits.length() / 4;
+        int weight = (integerPart.length() + 3) / 4 - 1;
+        int first = 0;
+        while (first < groups && digit(digits, first) == 0) {
+            first++;
+        }
+        int last = groups - 1;
+        while (last >= first && digit(digits, last) == 0) {
+            last--;
+        }
+        int count = Math.max(0, last - first + 1);
+
+        out.writeInt(8 + 2 * count);
+        out.writeShort(count);
+        out.writeShort(count == 0 ? 0 : weight - first);
+        out.writeShort(value.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+        out.writeShort(scale);
+        for (int i = first; i <= last; i++) {
+            out.writeShort(digit(digits, i));
+        }
+    }
+
+    /**
+     * Ends the data and returns the whole COPY payload.
+     */
+    byte[] finish() throws IOException {
+        out.writeShort(-1);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeNull() throws IOException {
+        out.writeInt(-1);
+    }
+
+    private static int digit(String digits, int group) {
+        return Integer.parseInt(digits, group * 4, group * 4 + 4, 10);
+    }
+}
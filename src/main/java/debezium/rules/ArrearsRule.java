@@ -0,0 +1,54 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.service.UtilService;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags new contributions posted for a period too far in the past.
+ */
+@Component
+public class ArrearsRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+    private final UtilService utilService;
+
+    public ArrearsRule(FraudProperties fraudProperties, UtilService utilService) {
+        this.fraudProperties = fraudProperties;
+        this.utilService = utilService;
+    }
+
+    @Override
+    public String name() {
+        return "arrears";
+    }
+
+    @Override
+    public int cost() {
+        return 2;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.PERIOD);
+    }
+
+    @Override
+    public boolean appliesToUpdates() {
+        return false;
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        int arrearsMonths = fraudProperties.getArrearsMonths();
+        if (utilService.isMonthsAgo(context.getPeriod(), arrearsMonths)) {
+            //contribution should be posted earlier, why ARREARS?
+            return Optional.of(String.format("&#9889 Contribution date is more than %s months in the past (%s/%s)",
+                    arrearsMonths, context.getAfter().getYear(), context.getAfter().getMonth()));
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,82 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.model.Contribution;
+import debezium.service.FixedPoint;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags updates that multiply or divide the contribution total by a large margin.
+ */
+@Component
+public class ChangeRatioRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+
+    public ChangeRatioRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+    }
+
+    @Override
+    public String name() {
+        return "change-ratio";
+    }
+
+    @Override
+    public int cost() {
+        return 1;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.AMOUNT, RuleInput.BEFORE_IMAGE);
+    }
+
+    @Override
+    public boolean appliesToNewRecords() {
+        return false;
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        long beforeFixed = context.getBeforeFixed();
+        long afterFixed = context.getAfterFixed();
+        double rate;
+        if (beforeFixed != FixedPoint.NONE && afterFixed != FixedPoint.NONE) {
+            if (beforeFixed == 0) {
+                return Optional.empty(); //note: no ratio to a zero contribution
+            }
+            rate = FixedPoint.ratio(afterFixed, beforeFixed, scale(context.getAfter()));
+        } else {
+            BigDecimal beforeTotal = context.getBeforeTotal();
+            if (beforeTotal.signum() == 0) {
+                return Optional.empty();
+            }
+            rate = context.getAfterTotal().divide(beforeTotal, RoundingMode.HALF_UP).doubleValue();
+        }
+        FraudProperties.ChangeRatio changeRatio = fraudProperties.getChangeRatio();
+        if (rate > changeRatio.getMaxIncrease() || rate < changeRatio.getMaxDecrease()) {
+            return Optional.of(String.format(
+                    "&#128681 Contribution amount increased/decreased by large margin of x%.6f (from %.2f to %.2f)",
+                    rate,
+                    context.beforeTotalValue(),
+                    context.afterTotalValue()
+            ));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The ratio is rounded to the scale of the total after the change, as BigDecimal division would.
+     */
+    private static int scale(Contribution contribution) {
+        int eeScale = contribution.getEe() == null ? 0 : contribution.getEe().scale();
+        int erScale = contribution.getEr() == null ? 0 : contribution.getEr().scale();
+        return Math.max(eeScale, erScale);
+    }
+}
@@ -0,0 +1,57 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags new contributions that follow several months without contributions.
+ */
+@Component
+public class DormancyRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+
+    public DormancyRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+    }
+
+    @Override
+    public String name() {
+        return "dormancy";
+    }
+
+    @Override
+    public int cost() {
+        return 10;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.PERIOD, RuleInput.HISTORY);
+    }
+
+    @Override
+    public boolean appliesToUpdates() {
+        return false;
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        Integer lastPeriod = context.previousPeriod();
+        if (lastPeriod == null) {
+            return Optional.empty();
+        }
+        //calculate the difference in year and months
+        long monthsDiff = context.getPeriod() - lastPeriod;
+
+        //check if the currentContributionDate-lastContributionDate is more than x months
+        if (monthsDiff >= fraudProperties.getDormantMonths()) {
+            //before this contribution, member had x dormant months. Check why
+            return Optional.of(String.format("&#128165 Sudden large contribution detected. Last contribution was %s months before this. ", monthsDiff));
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,49 @@
+package debezium.rules;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A single fraud check on a contribution change.
+ * Rules are Spring beans; the detector runs them cheapest first and may skip expensive rules
+ * once a contribution is already flagged.
+ */
+public interface FraudRule {
+
+    /**
+     * @return The rule name, used to disable it with {@code fraud.rules.disabled}.
+     */
+    String name();
+
+    /**
+     * @return The estimated relative cost of evaluating the rule; rules that read history or statistics cost more.
+     */
+    int cost();
+
+    /**
+     * @return The data the rule reads.
+     */
+    Set<RuleInput> requires();
+
+    /**
+     * @return Whether the rule checks new contributions.
+     */
+    default boolean appliesToNewRecords() {
+        return true;
+    }
+
+    /**
+     * @return Whether the rule checks updated contributions.
+     */
+    default boolean appliesToUpdates() {
+        return true;
+    }
+
+    /**
+     * Evaluates the rule.
+     *
+     * @param context The contribution change and the data about it.
+     * @return The reason the contribution is flagged, or empty if the rule does not flag it.
+     */
+    Optional<String> evaluate(RuleContext context);
+}
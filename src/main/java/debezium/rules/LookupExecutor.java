@@ -0,0 +1,80 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the database lookups of fraud rules concurrently, so a contribution waits for its slowest lookup
+ * rather than for the sum of them.
+ * <p>
+ * Lookups run on a fixed pool of {@code maxInFlight} platform threads, so they never take more than that many
+ * connections from the connection pool; further lookups queue until a thread is free. Lookups block on JDBC, and
+ * the build targets Java 17, so virtual threads would gain nothing here. A lookup cancelled while it is queued
+ * never runs; one cancelled while its query runs holds its thread until the query ends, which
+ * {@code fraud.lookups.query-timeout} bounds.
+ */
+@Slf4j
+@Component
+public class LookupExecutor implements DisposableBean {
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final long deadlineNanos;
+    private final ExecutorService executor;
+
+    public LookupExecutor(FraudProperties fraudProperties) {
+        FraudProperties.Lookups lookups = fraudProperties.getLookups();
+        this.enabled = lookups.isConcurrent();
+        this.deadlineNanos = lookups.getDeadline().toNanos();
+        this.executor = enabled ? newExecutor(lookups.getMaxInFlight()) : null;
+    }
+
+    /**
+     * Starts a lookup.
+     *
+     * @param lookup The lookup to run.
+     * @param <T>    The result type.
+     * @return The future result of the lookup.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            //note: skips lookups cancelled while queued, so they never take a connection
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(lookup.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(int maxInFlight) {
+        log.info("Running fraud rule lookups on {} platform threads", maxInFlight);
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "fraud-lookup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
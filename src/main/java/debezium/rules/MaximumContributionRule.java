@@ -0,0 +1,54 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.service.FixedPoint;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags contributions above the maximum allowed total.
+ */
+@Component
+public class MaximumContributionRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+    private final long maxAllowedFixed;
+
+    public MaximumContributionRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+        this.maxAllowedFixed = FixedPoint.of(fraudProperties.getMaxContribution());
+    }
+
+    @Override
+    public String name() {
+        return "maximum-contribution";
+    }
+
+    @Override
+    public int cost() {
+        return 1;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.AMOUNT);
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        BigDecimal maxAllowed = fraudProperties.getMaxContribution();
+        long afterFixed = context.getAfterFixed();
+        boolean tooHigh = afterFixed != FixedPoint.NONE && maxAllowedFixed != FixedPoint.NONE
+                ? afterFixed > maxAllowedFixed
+                : context.getAfterTotal().compareTo(maxAllowed) > 0;
+        if (tooHigh) {
+            return Optional.of(String.format("&#128293 Contribution amount is too high: %.2f (max allowed: %.2f)",
+                    context.afterTotalValue(),
+                    maxAllowed.doubleValue()));
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,51 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.service.FixedPoint;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags contributions well above the average of the member's previous contributions.
+ */
+@Component
+public class MemberAverageRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+
+    public MemberAverageRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+    }
+
+    @Override
+    public String name() {
+        return "member-average";
+    }
+
+    @Override
+    public int cost() {
+        return 10;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.AMOUNT, RuleInput.PERIOD, RuleInput.HISTORY);
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        //get the average of the last x contributions
+        long averageContribution = context.memberAverage(fraudProperties.getHistorySize());
+        if (averageContribution == FixedPoint.NONE) {
+            return Optional.empty();
+        }
+        if (context.afterTotalExceeds(averageContribution, fraudProperties.getMemberAverageMultiplier())) {
+            return Optional.of(String.format("&#128293 Contribution amount is suspiciously high: %.2f (Members' Average: %.2f)",
+                    context.afterTotalValue(),
+                    FixedPoint.toDouble(averageContribution)));
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,57 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.stats.MemberStats;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags contributions that deviate upwards from the member's running statistics: by z-score against the mean and
+ * standard deviation of all the member's contributions, or by score against the exponentially weighted moving
+ * average and deviation of the recent ones. Unlike {@link MemberAverageRule}, the threshold follows how much the
+ * member's contributions usually vary.
+ */
+@Component
+public class MemberDeviationRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+
+    public MemberDeviationRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+    }
+
+    @Override
+    public String name() {
+        return "member-deviation";
+    }
+
+    @Override
+    public int cost() {
+        return 5;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.AMOUNT, RuleInput.HISTORY);
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        FraudProperties.MemberDeviation memberDeviation = fraudProperties.getMemberDeviation();
+        MemberStats stats = context.memberStats(memberDeviation.getEwmaAlpha());
+        if (stats == null || stats.getCount() < memberDeviation.getMinSamples()) {
+            return Optional.empty();
+        }
+        double total = context.afterTotalValue();
+        double zScore = stats.zScore(total, memberDeviation.getMinDeviationRatio());
+        double ewmaScore = stats.ewmaScore(total, memberDeviation.getMinDeviationRatio());
+        //note: NaN scores compare false, so members without variance yet are not flagged
+        if (zScore > memberDeviation.getMaxZScore() || ewmaScore > memberDeviation.getMaxEwmaScore()) {
+            return Optional.of(String.format("&#128200 Contribution amount deviates from the member's history: %.2f is %.1f standard deviations above the mean (%.2f) and %.1f above the moving average (%.2f)",
+                    total, zScore, stats.getMean(), ewmaScore, stats.getEwma()));
+        }
+        return Optional.empty();
+    }
+}
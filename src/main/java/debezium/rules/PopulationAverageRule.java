@@ -0,0 +1,69 @@
+package debezium.rules;
+
+import debezium.config.FraudProperties;
+import debezium.service.FixedPoint;
+import debezium.stats.PopulationStats;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flags contributions that are suspiciously high compared to the contribution's population.
+ * Uses the streamed population statistics when the segment has enough samples, flagging totals above the
+ * configured percentile or multiple of the mean; otherwise falls back to the averages in the database.
+ */
+@Component
+public class PopulationAverageRule implements FraudRule {
+    private final FraudProperties fraudProperties;
+
+    public PopulationAverageRule(FraudProperties fraudProperties) {
+        this.fraudProperties = fraudProperties;
+    }
+
+    @Override
+    public String name() {
+        return "population-average";
+    }
+
+    @Override
+    public int cost() {
+        return 20;
+    }
+
+    @Override
+    public Set<RuleInput> requires() {
+        return EnumSet.of(RuleInput.AMOUNT, RuleInput.POPULATION);
+    }
+
+    @Override
+    public Optional<String> evaluate(RuleContext context) {
+        FraudProperties.Population population = fraudProperties.getPopulation();
+        PopulationStats stats = context.populationStats();
+        if (stats != null && stats.getCount() >= population.getMinSamples()) {
+            double total = context.afterTotalValue();
+            if (population.getPercentile() > 0 && !Double.isNaN(stats.getPercentileValue())) {
+                if (total > stats.getPercentileValue() * population.getPercentileMultiplier()) {
+                    return Optional.of(String.format("&#128293 Contribution amount is suspiciously high: %.2f (Population p%.2f: %.2f)",
+                            total,
+                            population.getPercentile() * 100,
+                            stats.getPercentileValue()));
+                }
+            } else if (total > stats.getMean() * population.getAverageMultiplier()) {
+                return Optional.of(String.format("&#128293 Contribution amount is suspiciously high: %.2f (Population Average: %.2f)",
+                        total,
+                        stats.getMean()));
+            }
+            return Optional.empty();
+        }
+
+        long averageTotal = context.databaseAverage();
+        if (averageTotal != FixedPoint.NONE && context.afterTotalExceeds(averageTotal, population.getAverageMultiplier())) {
+            return Optional.of(String.format("&#128293 Contribution amount is suspiciously high: %.2f (DB Average: %.2f)",
+                    context.afterTotalValue(),
+                    FixedPoint.toDouble(averageTotal)));
+        }
+        return Optional.empty();
+    }
+}
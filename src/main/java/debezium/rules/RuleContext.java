@@ -0,0 +1,340 @@
+package debezium.rules;
+
+import debezium.component.RateLimitedLogger;
+import debezium.dto.ContributionHistory;
+import debezium.dto.DetectionContext;
+import debezium.dto.PriorContributions;
+import debezium.model.Contribution;
+import debezium.service.ContributionService;
+import debezium.service.FixedPoint;
+import debezium.stats.MemberStats;
+import debezium.stats.PopulationStats;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The contribution change a rule evaluates, with the data about it. Locally maintained data is used when the
+ * detection context provides it; otherwise lookups fall back to the database.
+ * <p>
+ * Totals are kept in {@link FixedPoint} units so rules can compare them with primitive arithmetic.
+ * Database lookups can be started ahead with {@link #prefetch}, so they run concurrently while other rules are
+ * evaluated; rules then wait for them until the record's deadline. That includes loading the member's history
+ * when the detection context has a loader for it instead of the history itself.
+ */
+@Slf4j
+@Getter
+public class RuleContext {
+    private static final CompletableFuture<?> DONE = CompletableFuture.completedFuture(null);
+    private static final RateLimitedLogger lookupLog = new RateLimitedLogger(log, Duration.ofSeconds(10));
+
+    private final Contribution before;
+    private final Contribution after;
+    private final long beforeFixed;
+    private final long afterFixed;
+    private final int period;
+    private final int historySize;
+    private final DetectionContext detectionContext;
+    private final ContributionService contributionService;
+    @Getter(AccessLevel.NONE)
+    private BigDecimal beforeTotal;
+    @Getter(AccessLevel.NONE)
+    private BigDecimal afterTotal;
+    @Getter(AccessLevel.NONE)
+    private PriorContributions prior;
+    @Getter(AccessLevel.NONE)
+    private ContributionHistory loadedHistory;
+    @Getter(AccessLevel.NONE)
+    private CompletableFuture<PriorContributions> priorLookup;
+    @Getter(AccessLevel.NONE)
+    private CompletableFuture<ContributionHistory> historyLookup;
+    @Getter(AccessLevel.NONE)
+    private CompletableFuture<Contribution> databaseAverageLookup;
+    @Getter(AccessLevel.NONE)
+    private long deadline;
+
+    /**
+     * @param before              The contribution before the change, or null for new records.
+     * @param after               The contribution after the change.
+     * @param historySize         The number of past contributions the member average is taken over.
+     * @param detectionContext    The locally maintained detection data, or null to query the database.
+     * @param contributionService The service to query the database with.
+     */
+    public RuleContext(Contribution before, Contribution after, int historySize, DetectionContext detectionContext,
+                       ContributionService contributionService) {
+        this.before = before;
+        this.after = after;
+        this.beforeFixed = before == null ? FixedPoint.NONE : before.fixedTotal();
+        this.afterFixed = after.fixedTotal();
+        this.period = after.period();
+        this.historySize = historySize;
+        this.detectionContext = detectionContext;
+        this.contributionService = contributionService;
+    }
+
+    public boolean isUpdate() {
+        return before != null;
+    }
+
+    /**
+     * @return The total before the update, or null for new records.
+     */
+    public BigDecimal getBeforeTotal() {
+        if (beforeTotal == null && before != null) {
+            beforeTotal = total(before);
+        }
+        return beforeTotal;
+    }
+
+    public BigDecimal getAfterTotal() {
+        if (afterTotal == null) {
+            afterTotal = total(after);
+        }
+        return afterTotal;
+    }
+
+    /**
+     * @return The total before the update as a double, for messages and approximate comparisons.
+     */
+    public double beforeTotalValue() {
+        return beforeFixed != FixedPoint.NONE ? FixedPoint.toDouble(beforeFixed) : getBeforeTotal().doubleValue();
+    }
+
+    public double afterTotalValue() {
+        return afterFixed != FixedPoint.NONE ? FixedPoint.toDouble(afterFixed) : getAfterTotal().doubleValue();
+    }
+
+    /**
+     * Checks whether the total after the change is greater than a multiple of the given amount.
+     *
+     * @param amount     The amount in {@link FixedPoint} units.
+     * @param multiplier The multiple of the amount to compare with.
+     * @return true if the total is greater than amount * multiplier.
+     */
+    public boolean afterTotalExceeds(long amount, double multiplier) {
+        if (afterFixed != FixedPoint.NONE) {
+            return FixedPoint.exceeds(afterFixed, amount, multiplier);
+        }
+        return getAfterTotal().compareTo(FixedPoint.toBigDecimal(amount).multiply(BigDecimal.valueOf(multiplier))) > 0;
+    }
+
+    /**
+     * Returns the period of the member's latest contribution before this one.
+     *
+     * @return The previous period, or null if the member has no earlier contribution.
+     */
+    public Integer previousPeriod() {
+        ContributionHistory history = history();
+        if (history != null) {
+            ContributionHistory.Entry last = history.previousBefore(period);
+            return last == null ? null : last.period();
+        }
+        Contribution last = prior().previous();
+        return last == null ? null : last.period();
+    }
+
+    /**
+     * Averages the member's last contributions before this one.
+     *
+     * @param numberOfMonths The maximum number of contributions to average.
+     * @return The average total in {@link FixedPoint} units, or {@link FixedPoint#NONE} if there are none.
+     */
+    public long memberAverage(int numberOfMonths) {
+        ContributionHistory history = history();
+        if (history != null) {
+            return history.averageBefore(period, numberOfMonths);
+        }
+        BigDecimal average = numberOfMonths == historySize
+                ? prior().averageTotal()
+                : contributionService.getAverageXContributions(after.getRecordId(), numberOfMonths);
+        return average == null ? FixedPoint.NONE : FixedPoint.ofSaturated(average);
+    }
+
+    /**
+     * Returns the running statistics of the member's earlier contributions.
+     *
+     * @param ewmaAlpha The weight of each contribution in the EWMA, used if the statistics are computed from the
+     *                  history's entries.
+     * @return The statistics, or null if the member's history is not kept locally.
+     */
+    public MemberStats memberStats(double ewmaAlpha) {
+        ContributionHistory history = history();
+        long recordId = after.getRecordId() == null ? 0 : after.getRecordId();
+        return history == null ? null : history.runningStats(ewmaAlpha, period, recordId);
+    }
+
+    /**
+     * @return The statistics of the contribution's population segment, or null if they are not maintained locally.
+     */
+    public PopulationStats populationStats() {
+        return detectionContext == null ? null : detectionContext.populationStats();
+    }
+
+    /**
+     * @return The average contribution total across all contributions in {@link FixedPoint} units, from the database,
+     * or {@link FixedPoint#NONE} if there are none.
+     */
+    public long databaseAverage() {
+        Contribution averageContribution = databaseAverageLookup != null
+                ? await(databaseAverageLookup, "database average")
+                : contributionService.getAverageContribution();
+        return averageContribution == null ? FixedPoint.NONE : FixedPoint.ofSaturated(total(averageContribution));
+    }
+
+    /**
+     * Starts the database lookups that rules reading the given inputs will need and the detection context
+     * cannot answer, when there are several of them to overlap.
+     *
+     * @param lookupExecutor       The executor to run the lookups on.
+     * @param inputs               The inputs of the rules to be evaluated.
+     * @param minPopulationSamples The number of samples below which population statistics are not used.
+     */
+    public void prefetch(LookupExecutor lookupExecutor, Set<RuleInput> inputs, long minPopulationSamples) {
+        boolean historyNeeded = inputs.contains(RuleInput.HISTORY) && (detectionContext == null || detectionContext.history() == null);
+        PopulationStats stats = populationStats();
+        boolean averageNeeded = inputs.contains(RuleInput.POPULATION) && (stats == null || stats.getCount() < minPopulationSamples);
+        //note: a single lookup gains nothing from another thread, so it runs on this one when a rule first needs it
+        if (!historyNeeded || !averageNeeded) {
+            return;
+        }
+        deadline = System.nanoTime() + lookupExecutor.getDeadlineNanos();
+        if (detectionContext == null || detectionContext.historyLoader() == null) {
+            Long recordId = after.getRecordId();
+            priorLookup = lookupExecutor.submit(() -> contributionService.getPriorContributions(recordId, historySize));
+        } else {
+            historyLookup = lookupExecutor.submit(detectionContext.historyLoader());
+        }
+        databaseAverageLookup = lookupExecutor.submit(contributionService::getAverageContribution);
+    }
+
+    /**
+     * Checks whether a rule reading the given inputs can be evaluated without waiting for a lookup.
+     *
+     * @param inputs The inputs the rule reads.
+     * @return true if the lookups of these inputs are done, or the deadline has passed.
+     */
+    public boolean isReady(Set<RuleInput> inputs) {
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            return true;
+        }
+        if (inputs.contains(RuleInput.HISTORY) && !(isDone(priorLookup) && isDone(historyLookup))) {
+            return false;
+        }
+        return !inputs.contains(RuleInput.POPULATION) || isDone(databaseAverageLookup);
+    }
+
+    /**
+     * Waits until one of the pending lookups completes or the deadline passes.
+     */
+    public void awaitAnyLookup() {
+        List<CompletableFuture<?>> pending = new ArrayList<>(3);
+        for (CompletableFuture<?> lookup : lookups()) {
+            if (!lookup.isDone()) {
+                pending.add(lookup);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.anyOf(pending.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadline = System.nanoTime(); // stop waiting
+        } catch (ExecutionException | TimeoutException ignored) {
+            // reported by the rule reading the lookup
+        }
+    }
+
+    /**
+     * Abandons lookups no rule waited for, e.g. because the remaining rules were skipped. Lookups still waiting for
+     * a permit are not run; queries already running end by themselves.
+     */
+    public void cancelLookups() {
+        for (CompletableFuture<?> lookup : lookups()) {
+            lookup.cancel(false);
+        }
+    }
+
+    private List<CompletableFuture<?>> lookups() {
+        return List.of(
+                priorLookup == null ? DONE : priorLookup,
+                historyLookup == null ? DONE : historyLookup,
+                databaseAverageLookup == null ? DONE : databaseAverageLookup);
+    }
+
+    private <T> T await(CompletableFuture<T> lookup, String name) {
+        try {
+            return lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            lookupLog.warn("deadline:" + name, e, "Lookup of the %s of contribution %s missed its deadline, skipping the rules that need it",
+                    name, after.getRecordId());
+        } catch (ExecutionException e) {
+            lookupLog.warn("failure:" + name, e.getCause(), "Lookup of the %s of contribution %s failed", name, after.getRecordId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static boolean isDone(CompletableFuture<?> lookup) {
+        return lookup == null || lookup.isDone();
+    }
+
+    /**
+     * Returns the member's previous contribution and average from the database, querying both with one
+     * round trip the first time either is needed.
+     */
+    private PriorContributions prior() {
+        if (prior == null) {
+            if (priorLookup != null) {
+                prior = await(priorLookup, "prior contributions");
+            } else {
+                prior = contributionService.getPriorContributions(after.getRecordId(), historySize);
+            }
+            if (prior == null) {
+                prior = PriorContributions.none(historySize);
+            }
+        }
+        return prior;
+    }
+
+    /**
+     * Returns the member's history from the detection context, loading it with the context's loader if needed.
+     */
+    private ContributionHistory history() {
+        if (detectionContext == null || detectionContext.history() != null) {
+            return detectionContext == null ? null : detectionContext.history();
+        }
+        if (detectionContext.historyLoader() == null) {
+            return null;
+        }
+        if (loadedHistory == null) {
+            loadedHistory = historyLookup != null
+                    ? await(historyLookup, "history")
+                    : detectionContext.historyLoader().get();
+            if (loadedHistory == null) {
+                //note: a late or failed load reads as a member without earlier contributions, so no member rule flags
+                loadedHistory = new ContributionHistory();
+            }
+        }
+        return loadedHistory;
+    }
+
+    private static BigDecimal total(Contribution contribution) {
+        return Optional.ofNullable(contribution.getEe()).orElse(BigDecimal.ZERO)
+                .add(Optional.ofNullable(contribution.getEr()).orElse(BigDecimal.ZERO));
+    }
+}
@@ -0,0 +1,17 @@
+package debezium.rules;
+
+/**
+ * The data a fraud rule reads, used to skip rules whose data is not available for a change.
+ */
+public enum RuleInput {
+    /** The amounts of the contribution after the change. */
+    AMOUNT,
+    /** The contribution before the change; only updates carry it. */
+    BEFORE_IMAGE,
+    /** The contribution period. */
+    PERIOD,
+    /** The member's previous contributions for the sponsor and type. */
+    HISTORY,
+    /** The statistics of the contribution's population segment. */
+    POPULATION
+}
@@ -0,0 +1,301 @@
+package debezium.service;
+
+import debezium.component.ContributionFraudDetector;
+import debezium.component.PipelineMetrics;
+import debezium.config.BackfillProperties;
+import debezium.config.FraudProperties;
+import debezium.dto.ContributionHistory;
+import debezium.dto.DetectionContext;
+import debezium.kafka.DeadLetterPublisher;
+import debezium.model.Contribution;
+import debezium.repository.BackfillRepository;
+import debezium.rules.FraudRule;
+import debezium.rules.LookupExecutor;
+import debezium.stats.PopulationStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs fraud detection over the existing rows of public.contributions, reading the table directly instead of
+ * replaying it through Kafka.
+ * <p>
+ * Rows are streamed member by member through a server-side cursor, so each member's histories are built in memory
+ * as its contributions go by and no per-row query is needed. Population statistics are computed once, with one
+ * aggregate query. Rows are grouped into batches of whole members; each batch is analysed in parallel while the
+ * next one is read, and its flagged contributions are saved together with the checkpoint in one transaction,
+ * so an interrupted backfill resumes after the last saved member without flagging anything twice.
+ * Rows that fail detection are dead-lettered and skipped.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "backfill", name = "enabled", havingValue = "true")
+public class ContributionBackfill implements ApplicationRunner {
+    private static final String STAGE = "backfill";
+    private static final String SOURCE_TABLE = "public.contributions";
+
+    private final BackfillRepository backfillRepository;
+    private final ContributionService contributionService;
+    private final FraudProperties fraudProperties;
+    private final BackfillProperties backfillProperties;
+    private final ContributionFraudDetector contributionFraudDetector;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationContext applicationContext;
+
+    public ContributionBackfill(BackfillRepository backfillRepository, ContributionService contributionService,
+                                FraudProperties fraudProperties, BackfillProperties backfillProperties,
+                                List<FraudRule> rules, PipelineMetrics pipelineMetrics, LookupExecutor lookupExecutor,
+                                DeadLetterPublisher deadLetterPublisher, PlatformTransactionManager transactionManager,
+                                ApplicationContext applicationContext) {
+        this.backfillRepository = backfillRepository;
+        this.contributionService = contributionService;
+        this.fraudProperties = fraudProperties;
+        this.backfillProperties = backfillProperties;
+        //note: a detector of its own, without the rules that make no sense on historical rows
+        this.contributionFraudDetector = new ContributionFraudDetector(contributionService, fraudProperties,
+                rules.stream().filter(rule -> !backfillProperties.getDisabledRules().contains(rule.name())).toList(),
+                pipelineMetrics, lookupExecutor);
+        this.deadLetterPublisher = deadLetterPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the writes must not join the transaction holding the cursor open
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String name = backfillProperties.getName();
+        BackfillRepository.Checkpoint checkpoint = backfillProperties.isRestart() ? null : backfillRepository.findCheckpoint(name);
+        if (checkpoint != null && checkpoint.completed()) {
+            log.info("Backfill '{}' already completed ({} rows read, {} flagged), set backfill.restart to run it again",
+                    name, checkpoint.rowsRead(), checkpoint.rowsFlagged());
+        } else {
+            if (checkpoint != null) {
+                log.info("Resuming backfill '{}' below member {} ({} rows read, {} flagged)",
+                        name, checkpoint.lastMemberId(), checkpoint.rowsRead(), checkpoint.rowsFlagged());
+            }
+            ForkJoinPool pool = new ForkJoinPool(backfillProperties.getParallelism());
+            try {
+                new Run(checkpoint, populationStats(), pool).execute();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (backfillProperties.isExitWhenDone()) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    /**
+     * Builds the population statistics of every contribution type, and of every type and sponsor, from one
+     * aggregate query. Only count and sum are known, so the population rule compares with the mean.
+     *
+     * @return The statistics by {@link PopulationStats#segmentKey} key.
+     */
+    private Map<String, PopulationStats> populationStats() {
+        Map<String, PopulationStats> stats = new HashMap<>();
+        for (BackfillRepository.SegmentTotal total : backfillRepository.getSegmentTotals()) {
+            double sum = total.sum() == null ? 0 : total.sum().doubleValue();
+            PopulationStats type = stats.computeIfAbsent(PopulationStats.segmentKey(total.type()), key -> new PopulationStats());
+            type.setCount(type.getCount() + total.count());
+            type.setSum(type.getSum() + sum);
+            PopulationStats sponsor = new PopulationStats();
+            sponsor.setCount(total.count());
+            sponsor.setSum(sum);
+            stats.put(PopulationStats.segmentKey(total.type(), total.sponsorId()), sponsor);
+        }
+        return stats;
+    }
+
+    /**
+     * The state of one backfill run. Reading happens on the calling thread; a batch is analysed on the pool
+     * while the next one is read, and saved before the analysis of the next one starts.
+     */
+    private class Run {
+        private final Map<String, PopulationStats> populationStats;
+        private final ForkJoinPool pool;
+        private final int maxRowsPerSecond = backfillProperties.getMaxRowsPerSecond();
+        private final long startNanos = System.nanoTime();
+
+        private List<List<Contribution>> batch = new ArrayList<>();
+        private List<Contribution> member = new ArrayList<>();
+        private int batchRows;
+        private long rowsRead;
+        private long rowsFlagged;
+        private long rowsThisRun;
+
+        private CompletableFuture<List<Contribution>> pending;
+        private Long pendingLastMemberId;
+        private int pendingRows;
+        private Long lastMemberId;
+
+        private Run(BackfillRepository.Checkpoint checkpoint, Map<String, PopulationStats> populationStats, ForkJoinPool pool) {
+            this.populationStats = populationStats;
+            this.pool = pool;
+            if (checkpoint != null) {
+                this.lastMemberId = checkpoint.lastMemberId();
+                this.rowsRead = checkpoint.rowsRead();
+                this.rowsFlagged = checkpoint.rowsFlagged();
+            }
+        }
+
+        private void execute() {
+            backfillRepository.streamContributions(lastMemberId, backfillProperties.getFetchSize(), this::read);
+            endMember();
+            submit();
+            complete();
+            backfillRepository.saveCheckpoint(backfillProperties.getName(),
+                    new BackfillRepository.Checkpoint(lastMemberId, rowsRead, rowsFlagged, true));
+            log.info("Backfill '{}' completed: {} rows read, {} flagged, {} rows/s",
+                    backfillProperties.getName(), rowsRead, rowsFlagged, rowsPerSecond());
+        }
+
+        private void read(Contribution contribution) {
+            throttle();
+            if (!member.isEmpty() && !member.get(0).getMemberId().equals(contribution.getMemberId())) {
+                endMember();
+                if (batchRows >= backfillProperties.getBatchRows()) {
+                    submit();
+                }
+            }
+            member.add(contribution);
+        }
+
+        private void endMember() {
+            if (member.isEmpty()) {
+                return;
+            }
+            batch.add(member);
+            batchRows += member.size();
+            member = new ArrayList<>();
+        }
+
+        /**
+         * Starts the analysis of the current batch, then waits for the previous batch and saves it.
+         */
+        private void submit() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<List<Contribution>> members = batch;
+            CompletableFuture<List<Contribution>> analysis = CompletableFuture.supplyAsync(
+                    () -> members.parallelStream().flatMap(rows -> analyse(rows).stream()).toList(), pool);
+            complete();
+            pending = analysis;
+            pendingLastMemberId = members.get(members.size() - 1).get(0).getMemberId();
+            pendingRows = batchRows;
+            batch = new ArrayList<>();
+            batchRows = 0;
+        }
+
+        /**
+         * Waits for the pending batch, then saves its flagged contributions and the checkpoint in one transaction.
+         */
+        private void complete() {
+            if (pending == null) {
+                return;
+            }
+            List<Contribution> flagged = pending.join();
+            rowsRead += pendingRows;
+            rowsFlagged += flagged.size();
+            rowsThisRun += pendingRows;
+            lastMemberId = pendingLastMemberId;
+            BackfillRepository.Checkpoint checkpoint = new BackfillRepository.Checkpoint(lastMemberId, rowsRead, rowsFlagged, false);
+            transactionTemplate.executeWithoutResult(status -> {
+                contributionService.saveAll(flagged);
+                backfillRepository.saveCheckpoint(backfillProperties.getName(), checkpoint);
+            });
+            pending = null;
+            log.info("Backfill '{}': {} rows read, {} flagged, down to member {}, {} rows/s",
+                    backfillProperties.getName(), rowsRead, rowsFlagged, lastMemberId, rowsPerSecond());
+        }
+
+        /**
+         * Runs fraud detection on all contributions of one member, oldest first, building the member's
+         * histories as it goes.
+         *
+         * @param rows The member's contributions, ordered by sponsor, type and period.
+         * @return The flagged contributions.
+         */
+        private List<Contribution> analyse(List<Contribution> rows) {
+            int historySize = fraudProperties.getHistorySize();
+            double ewmaAlpha = fraudProperties.getMemberDeviation().getEwmaAlpha();
+            Map<String, ContributionHistory> histories = new HashMap<>();
+            List<Contribution> flagged = new ArrayList<>();
+            for (Contribution contribution : rows) {
+                ContributionHistory history = histories.computeIfAbsent(ContributionHistory.key(contribution), key -> new ContributionHistory());
+                Optional<String> reason;
+                try {
+                    reason = contributionFraudDetector.detectFraud(contribution,
+                            new DetectionContext(history, populationStats(contribution)));
+                    history.record(ContributionHistory.entryOf(contribution), historySize, ewmaAlpha, false);
+                } catch (RuntimeException e) {
+                    deadLetterPublisher.publish(STAGE, SOURCE_TABLE, -1, contribution.getRecordId(),
+                            String.valueOf(contribution.getMemberId()), contribution, e);
+                    continue;
+                }
+                if (reason.isPresent()) {
+                    contribution.setReasonFlagged(reason.get());
+                    flagged.add(contribution);
+                }
+            }
+            return flagged;
+        }
+
+        /**
+         * Reads the statistics of the contribution's population segment, preferring the sponsor segment
+         * when enabled and it has enough samples.
+         */
+        private PopulationStats populationStats(Contribution contribution) {
+            FraudProperties.Population population = fraudProperties.getPopulation();
+            if (population.isSegmentBySponsor()) {
+                PopulationStats stats = populationStats.get(PopulationStats.segmentKey(contribution.getType(), contribution.getSponsorId()));
+                if (stats != null && stats.getCount() >= population.getMinSamples()) {
+                    return stats;
+                }
+            }
+            return populationStats.get(PopulationStats.segmentKey(contribution.getType()));
+        }
+
+        /**
+         * Sleeps whenever reading runs ahead of the configured rate.
+         */
+        private void throttle() {
+            long read = rowsThisRun + pendingRows + batchRows + member.size();
+            if (maxRowsPerSecond <= 0 || read % 1000 != 0) {
+                return;
+            }
+            long aheadNanos = read * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond - (System.nanoTime() - startNanos);
+            if (aheadNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Backfill interrupted", e);
+                }
+            }
+        }
+
+        private long rowsPerSecond() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            return rowsThisRun * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+}
@@ -1,50 +1,60 @@
 package debezium.service;
 
+import debezium.dto.ContributionHistory;
+import debezium.dto.PriorContributions;
 import debezium.model.Contribution;
 import debezium.repository.ContributionRepository;
+import debezium.repository.CopyRepository;
 import debezium.repository.NativeRepository;
 import jakarta.persistence.Tuple;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class ContributionService {
     private final ContributionRepository repository;
     private final NativeRepository nativeRepository;
+    private final CopyRepository copyRepository;
 
-    public ContributionService(ContributionRepository contributionRepository, NativeRepository nativeRepository) {
+    public ContributionService(ContributionRepository contributionRepository, NativeRepository nativeRepository,
+                               CopyRepository copyRepository) {
         this.repository = contributionRepository;
         this.nativeRepository = nativeRepository;
+        this.copyRepository = copyRepository;
     }
 
     /**
-     * Processes a contribution from a JSON object.
-     * It parses the JSON, creates a Contribution object, and saves it to the repository.
+     * Saves a batch of processed contributions in one transaction.
+     * New contributions are inserted with one COPY; contributions with an ID go through {@link #saveAll}.
      *
-     * @param json The JSON object containing contribution data.
+     * @param contributions The contributions decoded from the processed contributions topic.
      */
-    public void processContribution(Object json) {
-        try {
-            if (json == null) {
-                log.warn("Received null invoice data");
-                return;
-            }
-            // Assuming json is a String representation of an Invoice
-            Contribution contribution = Contribution.fromJson(json.toString());
-            if (contribution != null) {
-                save(contribution);
-                log.info("Processed contribution: {}", contribution.getId());
+    @Transactional
+    public void processContributions(List<Contribution> contributions) {
+        List<Contribution> inserts = new ArrayList<>(contributions.size());
+        List<Contribution> saves = new ArrayList<>();
+        for (Contribution co : contributions) {
+            if (co.getId() == null) {
+                inserts.add(co);
             } else {
-                log.warn("Failed to parse contribution from JSON: {}", json);
+                saves.add(co);
             }
-        } catch (Exception e) {
-            log.error("Error processing contribution: {}", e.getMessage(), e);
         }
+        saveAll(saves);
+        copyRepository.copyContributions(inserts);
+        log.info("Processed {} contributions", contributions.size());
     }
 
     /**
@@ -65,6 +75,29 @@ public class ContributionService {
         repository.save(co);
     }
 
+    /**
+     * Saves a batch of contributions with one existence query and batched inserts.
+     * Contributions whose ID exists are updated; all others are inserted with a newly allocated ID.
+     *
+     * @param contributions The Contribution objects to save.
+     */
+    public void saveAll(List<Contribution> contributions) {
+        if (contributions.isEmpty()) {
+            return;
+        }
+        List<Long> ids = contributions.stream().map(Contribution::getId).filter(Objects::nonNull).toList();
+        Set<Long> existing = new HashSet<>();
+        if (!ids.isEmpty()) {
+            repository.findAllById(ids).forEach(co -> existing.add(co.getId()));
+        }
+        for (Contribution co : contributions) {
+            if (co.getId() != null && !existing.contains(co.getId())) {
+                co.setId(null);
+            }
+        }
+        repository.saveAll(contributions);
+    }
+
     /**
      * Checks if a contribution exists by its record ID.
      *
@@ -82,24 +115,7 @@ public class ContributionService {
      * @return A Contribution object representing the previous contribution, or null if no previous contribution exists.
      */
     public Contribution getPreviousContribution(Long contributionId) {
-        Tuple tuple = nativeRepository.getPreviousContribution(contributionId);
-        if (tuple == null) {
-            return null;
-        }
-        BigDecimal ee = tuple.get("ee", BigDecimal.class);
-        BigDecimal er = tuple.get("er", BigDecimal.class);
-        BigDecimal tot = tuple.get("tot", BigDecimal.class);
-        var year = tuple.get("year", Integer.class);
-        var month = tuple.get("month", String.class);
-        Contribution contribution = new Contribution();
-        contribution.setRecordId(tuple.get("id", Long.class));
-        contribution.setEe(ee);
-        contribution.setEr(er);
-        contribution.setTotal(tot);
-        contribution.setYear(year);
-        contribution.setMonth(month);
-
-        return contribution;
+        return getPriorContributions(contributionId, 1).previous();
     }
 
     /**
@@ -110,29 +126,107 @@ public class ContributionService {
      * @return The average contributions as a BigDecimal, or null if no contributions exist.
      */
     public BigDecimal getAverageXContributions(Long contributionId, int numberOfMonths) {
-        List<Tuple> xContributions = nativeRepository.getXContributions(contributionId, numberOfMonths);
-        if (xContributions == null || xContributions.isEmpty()) {
-            return null;
+        return getPriorContributions(contributionId, numberOfMonths).averageTotal();
+    }
+
+    /**
+     * Retrieves the previous contribution and the average of the last contributions before a given contribution
+     * with one query.
+     *
+     * @param contributionId The ID of the contribution in public.contributions.
+     * @param numberOfMonths The number of months to consider for averaging.
+     * @return The prior contributions, with no previous contribution and no average if none exist or the query fails.
+     */
+    public PriorContributions getPriorContributions(Long contributionId, int numberOfMonths) {
+        List<Tuple> tuples = nativeRepository.getPriorContributions(contributionId, numberOfMonths);
+        if (tuples == null || tuples.isEmpty()) {
+            return PriorContributions.none(numberOfMonths);
         }
 
-        BigDecimal sum = xContributions.parallelStream()
-                .map(tuple -> {
-                    BigDecimal ee = tuple.get("ee", BigDecimal.class);
-                    BigDecimal er = tuple.get("er", BigDecimal.class);
-                    if (ee == null) ee = BigDecimal.ZERO;
-                    if (er == null) er = BigDecimal.ZERO;
-                    return ee.add(er);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Tuple latest = tuples.get(0);
+        Contribution previous = new Contribution();
+        previous.setRecordId(latest.get("id", Long.class));
+        previous.setEe(latest.get("ee", BigDecimal.class));
+        previous.setEr(latest.get("er", BigDecimal.class));
+        previous.setTotal(latest.get("tot", BigDecimal.class));
+        previous.setYear(latest.get("year", Integer.class));
+        previous.setMonth(latest.get("month", String.class));
+        previous.setPeriod(latest.get("period", Integer.class));
 
+        BigDecimal sum = latest.get("total_sum", BigDecimal.class);
+        long samples = latest.get("samples", Long.class);
         //note: compute frequency of contributions
+        BigDecimal average = sum == null || sum.signum() == 0
+                ? null
+                : sum.divide(BigDecimal.valueOf(samples), RoundingMode.HALF_UP);
+        return new PriorContributions(previous, average, numberOfMonths);
+    }
 
-        if (sum.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
+    /**
+     * Loads the latest contributions of the member, sponsor and type of the given contribution.
+     * Used to seed the contribution history state store the first time a member is seen.
+     *
+     * @param co    The contribution whose history to load.
+     * @param limit The maximum number of contributions to load.
+     * @return The contribution history, empty if none exists, or {@link ContributionHistory#unseeded} if the query fails.
+     */
+    public ContributionHistory loadContributionHistory(Contribution co, int limit) {
+        List<Tuple> tuples = nativeRepository.getContributionHistory(co.getMemberId(), co.getSponsorId(), co.getType(), limit);
+        if (tuples == null) {
+            return ContributionHistory.unseeded();
+        }
+        ContributionHistory history = new ContributionHistory();
+        for (Tuple tuple : tuples) {
+            Contribution contribution = new Contribution();
+            contribution.setRecordId(tuple.get("id", Long.class));
+            contribution.setEe(tuple.get("ee", BigDecimal.class));
+            contribution.setEr(tuple.get("er", BigDecimal.class));
+            contribution.setYear(tuple.get("year", Integer.class));
+            contribution.setMonth(tuple.get("month", String.class));
+            contribution.setPeriod(tuple.get("period", Integer.class));
+            history.record(ContributionHistory.entryOf(contribution), limit);
         }
-        return sum.divide(BigDecimal.valueOf(xContributions.size()), RoundingMode.HALF_UP);
+        return history;
     }
 
+    /**
+     * Loads the latest contributions of many members, sponsors and types with one query.
+     * Used to seed the contribution history state store for a whole batch of records.
+     *
+     * @param memberIds  The IDs of the members.
+     * @param sponsorIds The IDs of the sponsors, one per member ID.
+     * @param types      The contribution types, one per member ID.
+     * @param limit      The maximum number of contributions to load per member, sponsor and type.
+     * @return The contribution histories by {@link ContributionHistory#key}, empty for keys without contributions,
+     * or {@link ContributionHistory#unseeded} for every key if the query fails.
+     */
+    public Map<String, ContributionHistory> loadContributionHistories(List<Long> memberIds, List<Long> sponsorIds,
+                                                                      List<String> types, int limit) {
+        List<Tuple> tuples = nativeRepository.getContributionHistories(memberIds.toArray(Long[]::new),
+                sponsorIds.toArray(Long[]::new), types.toArray(String[]::new), limit);
+        boolean failed = tuples == null;
+        Map<String, ContributionHistory> histories = new HashMap<>();
+        for (int i = 0; i < memberIds.size(); i++) {
+            histories.put(ContributionHistory.key(memberIds.get(i), sponsorIds.get(i), types.get(i)),
+                    failed ? ContributionHistory.unseeded() : new ContributionHistory());
+        }
+        if (failed) {
+            return histories;
+        }
+        for (Tuple tuple : tuples) {
+            Contribution contribution = new Contribution();
+            contribution.setRecordId(tuple.get("id", Long.class));
+            contribution.setEe(tuple.get("ee", BigDecimal.class));
+            contribution.setEr(tuple.get("er", BigDecimal.class));
+            contribution.setYear(tuple.get("year", Integer.class));
+            contribution.setMonth(tuple.get("month", String.class));
+            contribution.setPeriod(tuple.get("period", Integer.class));
+            String key = ContributionHistory.key(tuple.get("member_id", Long.class), tuple.get("sponsor_id", Long.class), tuple.get("type", String.class));
+            histories.computeIfAbsent(key, k -> new ContributionHistory())
+                    .record(ContributionHistory.entryOf(contribution), limit);
+        }
+        return histories;
+    }
 
     /**
      * Retrieves the average contribution across all contributions.
@@ -0,0 +1,193 @@
+package debezium.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic on primitive longs.
+ * Amounts are carried as a count of {@code 10^-SCALE} units, so that decoding and the fraud rules' sums and
+ * comparisons allocate nothing. {@link #NONE} marks an amount that does not fit, in which case callers fall back
+ * to {@link BigDecimal}.
+ */
+public final class FixedPoint {
+    public static final int SCALE = 6;
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final long[] POW10 = new long[19];
+    private static final byte[] SEXTETS = new byte[128];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+        java.util.Arrays.fill(SEXTETS, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Decodes a Base64 encoded big-endian two's-complement integer, as Debezium encodes decimal unscaled values,
+     * straight into a long.
+     *
+     * @param base64 The Base64 encoded string.
+     * @return The unscaled value, or {@link #NONE} if it is empty or does not fit in a long.
+     * @throws IllegalArgumentException if the string is not valid Base64.
+     */
+    public static long decodeUnscaled(String base64) {
+        long value = 0;
+        int bytes = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < base64.length(); i++) {
+            char c = base64.charAt(i);
+            if (c == '=') break;
+            int sextet = c < 128 ? SEXTETS[c] : -1;
+            if (sextet < 0) {
+                throw new IllegalArgumentException("Illegal base64 character " + Integer.toHexString(c));
+            }
+            buffer = (buffer << 6) | sextet;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                int b = (buffer >> bits) & 0xFF;
+                if (bytes == 0) {
+                    value = (byte) b; // sign-extend the most significant byte
+                } else {
+                    long top = value >> 55;
+                    if (top != 0 && top != -1) {
+                        return NONE;
+                    }
+                    value = (value << 8) | b;
+                }
+                bytes++;
+            }
+        }
+        return bytes == 0 ? NONE : value;
+    }
+
+    /**
+     * Converts an unscaled value with the given scale to fixed-point units.
+     *
+     * @param unscaled The unscaled value.
+     * @param scale    The scale of the unscaled value.
+     * @return The amount in fixed-point units, or {@link #NONE} if it does not fit or would lose precision.
+     */
+    public static long rescale(long unscaled, int scale) {
+        if (unscaled == NONE || scale < 0 || Math.abs(scale - SCALE) >= POW10.length) {
+            return NONE;
+        }
+        if (scale == SCALE) {
+            return unscaled;
+        }
+        if (scale < SCALE) {
+            long factor = POW10[SCALE - scale];
+            if (Math.abs(unscaled) > Long.MAX_VALUE / factor) {
+                return NONE;
+            }
+            return unscaled * factor;
+        }
+        long divisor = POW10[scale - SCALE];
+        return unscaled % divisor == 0 ? unscaled / divisor : NONE;
+    }
+
+    /**
+     * Converts a BigDecimal to fixed-point units.
+     *
+     * @param amount The amount, or null for zero.
+     * @return The amount in fixed-point units, or {@link #NONE} if it does not fit or would lose precision.
+     */
+    public static long of(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Converts a BigDecimal to fixed-point units, rounding extra digits and clamping values that do not fit.
+     *
+     * @param amount The amount, or null for zero.
+     * @return The amount in fixed-point units.
+     */
+    public static long ofSaturated(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        BigDecimal scaled = amount.setScale(SCALE, RoundingMode.HALF_UP);
+        if (scaled.unscaledValue().bitLength() > 63) {
+            return scaled.signum() > 0 ? Long.MAX_VALUE : NONE + 1;
+        }
+        return scaled.unscaledValue().longValue();
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @return The sum, or {@link #NONE} if either amount is {@link #NONE} or the sum overflows.
+     */
+    public static long add(long a, long b) {
+        if (a == NONE || b == NONE) {
+            return NONE;
+        }
+        long sum = a + b;
+        // overflow iff both operands have the same sign and the sum has the other
+        return ((a ^ sum) & (b ^ sum)) < 0 ? NONE : sum;
+    }
+
+    public static BigDecimal toBigDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    public static double toDouble(long amount) {
+        return (double) amount / POW10[SCALE];
+    }
+
+    /**
+     * Divides two amounts, rounding half up to the given number of decimals,
+     * like {@code BigDecimal.divide(divisor, RoundingMode.HALF_UP)} on amounts with that scale.
+     *
+     * @param dividend The dividend in fixed-point units.
+     * @param divisor  The non-zero divisor in fixed-point units.
+     * @param decimals The number of decimals to round the quotient to.
+     * @return The rounded quotient.
+     */
+    public static double ratio(long dividend, long divisor, int decimals) {
+        long factor = POW10[Math.min(Math.max(decimals, 0), POW10.length - 1)];
+        if (Math.abs(dividend) > Long.MAX_VALUE / factor) {
+            return toBigDecimal(dividend).divide(toBigDecimal(divisor), decimals, RoundingMode.HALF_UP).doubleValue();
+        }
+        long scaled = dividend * factor;
+        long quotient = scaled / divisor;
+        long remainder = scaled % divisor;
+        if (Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += Long.signum(scaled) * Long.signum(divisor);
+        }
+        return (double) quotient / factor;
+    }
+
+    /**
+     * Checks whether an amount is greater than a multiple of another.
+     *
+     * @param amount     The amount in fixed-point units.
+     * @param base       The base amount in fixed-point units.
+     * @param multiplier The multiple of the base to compare with.
+     * @return true if amount > base * multiplier.
+     */
+    public static boolean exceeds(long amount, long base, double multiplier) {
+        long whole = (long) multiplier;
+        if (whole == multiplier && (base == 0 || Math.abs(base) <= Long.MAX_VALUE / Math.max(1, Math.abs(whole)))) {
+            return amount > base * whole;
+        }
+        return (double) amount > (double) base * multiplier;
+    }
+}
@@ -1,35 +1,48 @@
 package debezium.service;
 
 import debezium.model.Invoice;
+import debezium.repository.CopyRepository;
 import debezium.repository.InvoiceRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class InvoiceService {
     private final InvoiceRepository repository;
-    public InvoiceService(InvoiceRepository repository) {
+    private final CopyRepository copyRepository;
+    public InvoiceService(InvoiceRepository repository, CopyRepository copyRepository) {
         this.repository = repository;
+        this.copyRepository = copyRepository;
     }
 
-    public void processInvoice(Object json){
-        try {
-            if (json == null) {
-                log.warn("Received null invoice data");
-                return;
-            }
-            // Assuming json is a String representation of an Invoice
-            Invoice invoice = Invoice.fromJson(json.toString());
-            if (invoice != null) {
-                save(invoice);
-                log.info("Processed invoice: {}", invoice.getId());
+    /**
+     * Saves a batch of processed invoices in one transaction.
+     * New invoices are inserted with one COPY; invoices with an ID go through {@link #saveAll}.
+     *
+     * @param invoices The invoices decoded from the processed invoices topic.
+     */
+    @Transactional
+    public void processInvoices(List<Invoice> invoices) {
+        List<Invoice> inserts = new ArrayList<>(invoices.size());
+        List<Invoice> saves = new ArrayList<>();
+        for (Invoice invoice : invoices) {
+            if (invoice.getId() == null) {
+                inserts.add(invoice);
             } else {
-                log.warn("Failed to parse invoice from JSON: {}", json);
+                saves.add(invoice);
             }
-        } catch (Exception e) {
-            log.error("Error processing invoice: {}", e.getMessage(), e);
         }
+        saveAll(saves);
+        copyRepository.copyInvoices(inserts);
+        log.info("Processed {} invoices", invoices.size());
     }
 
     public void save(Invoice invoice) {
@@ -43,6 +56,29 @@ public class InvoiceService {
         repository.save(invoice);
     }
 
+    /**
+     * Saves a batch of invoices with one existence query and batched inserts.
+     * Invoices whose ID exists are updated; all others are inserted with a newly allocated ID.
+     *
+     * @param invoices The Invoice objects to save.
+     */
+    public void saveAll(List<Invoice> invoices) {
+        if (invoices.isEmpty()) {
+            return;
+        }
+        List<Long> ids = invoices.stream().map(Invoice::getId).filter(Objects::nonNull).toList();
+        Set<Long> existing = new HashSet<>();
+        if (!ids.isEmpty()) {
+            repository.findAllById(ids).forEach(invoice -> existing.add(invoice.getId()));
+        }
+        for (Invoice invoice : invoices) {
+            if (invoice.getId() != null && !existing.contains(invoice.getId())) {
+                invoice.setId(null);
+            }
+        }
+        repository.saveAll(invoices);
+    }
+
     public boolean existsInvoiceByRecordId(long id) {
         return repository.existsInvoiceByRecordId(id);
     }
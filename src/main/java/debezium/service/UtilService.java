@@ -1,7 +1,5 @@
 package debezium.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import debezium.enums.MonthEnum;
 import org.springframework.stereotype.Service;
@@ -9,108 +7,57 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.LocalDate;
-import java.time.Month;
-import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.Locale;
 
 @Service
 public class UtilService {
+    // the lower case letters of JAN..DEC as ints, in month order
+    private static final int[] MONTH_CODES = Arrays.stream(MonthEnum.values())
+            .sorted(Comparator.comparingInt(MonthEnum::getMonthNumber))
+            .mapToInt(month -> month.name().toLowerCase(Locale.ROOT).chars().reduce(0, (code, c) -> code << 8 | c))
+            .toArray();
+
     public final ObjectMapper mapper = new ObjectMapper();
 
     /**
-     * Extracts field scales from the given raw JSON string.
+     * Checks if the given contribution period is before the current month minus a specified number of months.
      *
-     * @param rawJson The raw JSON string to parse.
-     * @return A map where keys are field names and values are their corresponding scales.
+     * @param period         The contribution period, see {@link #toPeriod}.
+     * @param numberOfMonths The number of months to subtract from the current month.
+     * @return true if the contribution period is before the calculated months ago, false otherwise.
      */
-    public Map<String, Integer> getFieldScales(String rawJson) {
-        try {
-
-            JsonNode root = mapper.readTree(rawJson);
-            Map<String, Integer> fieldScaleMap = new HashMap<>();
-
-            JsonNode fields = root.at("/schema/fields/0/fields");
-            if (fields.isArray()) {
-                for (JsonNode field : fields) {
-                    JsonNode fieldNameNode = field.get("field");
-                    JsonNode parametersNode = field.get("parameters");
-
-                    if (fieldNameNode != null && parametersNode != null && parametersNode.has("scale")) {
-                        String fieldName = fieldNameNode.asText();
-                        int scale = parametersNode.get("scale").asInt();
-                        fieldScaleMap.put(fieldName, scale);
-                    }
-                }
-            }
-            return fieldScaleMap;
-        } catch (JsonProcessingException e) {
-            System.out.println("Error processing JSON: " + e.getMessage());
-            return new HashMap<>();
-        }
+    public boolean isMonthsAgo(int period, int numberOfMonths) {
+        LocalDate today = LocalDate.now();
+        return period < today.getYear() * 12 + today.getMonthValue() - 1 - numberOfMonths;
     }
 
     /**
-     * Extracts the "before" JSON node from the given raw JSON string.
+     * Converts a year and month string into a period number, the count of months since year 0.
+     * Periods can be compared and subtracted directly to get the number of months between them.
      *
-     * @param rawJson The raw JSON string to parse.
-     * @return The "before" JSON node, or null if it is missing, null, or empty.
+     * @param year        The year.
+     * @param monthString The month as a string (e.g., "JAN", "FEB"), in any case.
+     * @return The period number.
+     * @throws IllegalArgumentException if the month is not a three-letter month.
      */
-    public JsonNode beforeJson(String rawJson) {
-        try {
-            if (rawJson == null || rawJson.isEmpty()) {
-                return null;
+    public static int toPeriod(int year, String monthString) {
+        //note: matches the letters as one int instead of upper-casing the string and looking up the enum
+        if (monthString != null && monthString.length() == 3) {
+            int code = 0;
+            for (int i = 0; i < 3 && code >= 0; i++) {
+                char c = monthString.charAt(i);
+                code = c > 0x7F ? -1 : code << 8 | (c | 0x20); // ASCII lower case
             }
-            JsonNode root = mapper.readTree(rawJson);
-            JsonNode before = root.path("payload").path("before");
-            return before.isMissingNode() || before.isNull() || before.isEmpty() ? null : before;
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return null;
-        }
-    }
-
-    /**
-     * Extracts the "after" JSON node from the given raw JSON string.
-     *
-     * @param rawJson The raw JSON string to parse.
-     * @return The "after" JSON node, or null if it is missing, null, or empty.
-     */
-    public JsonNode afterJson(String rawJson) {
-        try {
-            if (rawJson == null || rawJson.isEmpty()) {
-                return null;
+            for (int month = 0; month < MONTH_CODES.length; month++) {
+                if (MONTH_CODES[month] == code) {
+                    return year * 12 + month;
+                }
             }
-            JsonNode root = mapper.readTree(rawJson);
-            JsonNode after = root.path("payload").path("after");
-            return after.isMissingNode() || after.isNull() || after.isEmpty() ? null : after;
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return null;
-        }
-    }
-
-    /**
-     * Checks if the given year and month string is before the current date minus a specified number of months.
-     *
-     * @param year          The year to check.
-     * @param monthString   The month as a string (e.g., "JANUARY", "FEBRUARY").
-     * @param numberOfMonths The number of months to subtract from the current date.
-     * @return true if the contribution period is before the calculated months ago, false otherwise.
-     */
-    public boolean isMonthsAgo(int year, String monthString, int numberOfMonths) {
-        try {
-            Month month = Month.valueOf(MonthEnum.valueOf(monthString.toUpperCase()).getName());
-            YearMonth contributionPeriod = YearMonth.of(year, month);
-            YearMonth monthsAgo = YearMonth.from(LocalDate.now().minusMonths(numberOfMonths));
-
-            // Check if the contribution period is before the calculated months ago
-            return contributionPeriod.isBefore(monthsAgo);
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return false;
         }
+        throw new IllegalArgumentException("Not a contribution month: " + monthString);
     }
 
     /**
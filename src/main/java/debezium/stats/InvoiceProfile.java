@@ -0,0 +1,81 @@
+package debezium.stats;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * The long-run invoicing rate of one owner, kept as exponentially decayed sums so that it is updated in constant
+ * time per invoice and forgets old behaviour at the configured half-life. This is the value of the invoice profile
+ * store.
+ * <p>
+ * At a steady rate, a sum decayed with half-life {@code H} settles at {@code rate * H / ln 2}, so the total
+ * expected within a window of length {@code W} is {@code decayedSum * ln 2 * W / H}. Profiles younger than a few
+ * half-lives have not settled yet, which {@link #expectedSum} corrects for. The expectation is never less than
+ * the owner's average invoice, so that owners who invoice rarely are not flagged for every invoice.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class InvoiceProfile {
+    private static final double LN2 = Math.log(2);
+
+    private long samples;
+    private double decayedSum;
+    private double decayedCount;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    /**
+     * Applies one invoice change to the profile.
+     *
+     * @param timestamp The time of the change in epoch milliseconds.
+     * @param count     The number of invoices added: 1 for new invoices, 0 for updates.
+     * @param change    The amount added, the full amount for new invoices and the difference for updates.
+     * @param halfLife  The half-life of the profile.
+     * @return This profile.
+     */
+    public InvoiceProfile apply(long timestamp, int count, double change, Duration halfLife) {
+        if (firstTimestamp == 0) {
+            firstTimestamp = timestamp;
+            lastTimestamp = timestamp;
+        }
+        double decay = decay(timestamp, halfLife);
+        decayedSum = decayedSum * decay + change;
+        decayedCount = decayedCount * decay + count;
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        samples += count;
+        return this;
+    }
+
+    /**
+     * Estimates the total an owner invoices within a window, from its rate before the given time.
+     *
+     * @param timestamp  The end of the window in epoch milliseconds.
+     * @param window     The length of the window.
+     * @param halfLife   The half-life of the profile.
+     * @param minSamples The number of invoices below which the profile is not used.
+     * @return The expected total, or NaN if the profile has too few invoices or is younger than the window.
+     */
+    public double expectedSum(long timestamp, Duration window, Duration halfLife, long minSamples) {
+        long age = timestamp - firstTimestamp;
+        if (samples < minSamples || age < window.toMillis()) {
+            return Double.NaN;
+        }
+        double halfLifeMs = halfLife.toMillis();
+        double settled = 1 - Math.pow(2, -age / halfLifeMs);
+        double sum = decayedSum * decay(timestamp, halfLife);
+        double averageInvoice = decayedCount > 0 ? decayedSum / decayedCount : 0;
+        return Math.max(sum * LN2 * window.toMillis() / (halfLifeMs * settled), averageInvoice);
+    }
+
+    /**
+     * @return The factor the decayed sums shrink by until the given time; out-of-order times are not decayed backwards.
+     */
+    private double decay(long timestamp, Duration halfLife) {
+        long elapsed = timestamp - lastTimestamp;
+        return elapsed <= 0 ? 1 : Math.pow(2, -(double) elapsed / halfLife.toMillis());
+    }
+}
@@ -0,0 +1,35 @@
+package debezium.stats;
+
+import debezium.service.FixedPoint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The invoices of one owner within one hopping window: how many, their total and the largest amount,
+ * in {@link FixedPoint} units. This is the value of the invoice window store.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class InvoiceWindow {
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Applies one invoice change to the window.
+     *
+     * @param count  The number of invoices added: 1 for new invoices, 0 for updates.
+     * @param change The amount added to the total, the full amount for new invoices and the difference for updates.
+     * @param amount The amount of the invoice after the change.
+     * @return This window.
+     */
+    public InvoiceWindow apply(int count, long change, long amount) {
+        this.count += count;
+        long next = FixedPoint.add(sum, change);
+        this.sum = next == FixedPoint.NONE ? (change > 0 ? Long.MAX_VALUE : sum) : next;
+        this.max = Math.max(max, amount);
+        return this;
+    }
+}
@@ -0,0 +1,126 @@
+package debezium.stats;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Running statistics of the contribution totals of one member for one sponsor and type, updated in constant time
+ * per contribution: the count, mean and variance by Welford's algorithm, and an exponentially weighted moving
+ * average (EWMA) and variance that follow recent contributions more closely. Kept in the member's
+ * {@link debezium.dto.ContributionHistory}.
+ * <p>
+ * An amendment replaces the amount it amends: Welford's mean and variance remove the old amount exactly, while the
+ * EWMA is corrected by the weight of the latest contribution, which is exact when the latest one is amended.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class MemberStats {
+    private long count;
+    private double mean;
+    //note: the sum of squared differences from the mean, Welford's M2
+    private double m2;
+    private double ewma;
+    private double ewmVariance;
+    private int lastPeriod;
+
+    /**
+     * Adds a new contribution.
+     *
+     * @param total  The contribution total.
+     * @param period The contribution period.
+     * @param alpha  The weight of the new total in the EWMA, between 0 and 1.
+     * @return These statistics.
+     */
+    public MemberStats add(double total, int period, double alpha) {
+        addWelford(total);
+        if (count == 1) {
+            ewma = total;
+            ewmVariance = 0;
+        } else {
+            double delta = total - ewma;
+            ewma += alpha * delta;
+            ewmVariance = (1 - alpha) * (ewmVariance + alpha * delta * delta);
+        }
+        lastPeriod = count == 1 ? period : Math.max(lastPeriod, period);
+        return this;
+    }
+
+    /**
+     * Replaces the total of an amended contribution.
+     *
+     * @param oldTotal The total before the amendment.
+     * @param newTotal The total after the amendment.
+     * @param alpha    The weight of the latest total in the EWMA, between 0 and 1.
+     * @return These statistics.
+     */
+    public MemberStats replace(double oldTotal, double newTotal, double alpha) {
+        if (count == 0) {
+            return this;
+        }
+        if (count == 1) {
+            count = 0;
+            mean = 0;
+            m2 = 0;
+        } else {
+            double previousMean = mean;
+            mean = (count * mean - oldTotal) / (count - 1);
+            m2 = Math.max(0, m2 - (oldTotal - previousMean) * (oldTotal - mean));
+            count--;
+        }
+        addWelford(newTotal);
+        ewma += alpha * (newTotal - oldTotal);
+        return this;
+    }
+
+    /**
+     * @return The sample variance, or NaN with fewer than two contributions.
+     */
+    @JsonIgnore
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * Returns how many standard deviations a total lies above the mean.
+     *
+     * @param total             The total to score.
+     * @param minDeviationRatio The smallest standard deviation used, relative to the mean, so that members who
+     *                          always pay the same amount are not flagged for small changes.
+     * @return The z-score, or NaN with fewer than two contributions.
+     */
+    public double zScore(double total, double minDeviationRatio) {
+        return score(total - mean, getVariance(), minDeviationRatio * Math.abs(mean));
+    }
+
+    /**
+     * Returns how many exponentially weighted standard deviations a total lies above the EWMA.
+     *
+     * @param total             The total to score.
+     * @param minDeviationRatio The smallest standard deviation used, relative to the EWMA.
+     * @return The score, or NaN with fewer than two contributions.
+     */
+    public double ewmaScore(double total, double minDeviationRatio) {
+        return score(total - ewma, count > 1 ? ewmVariance : Double.NaN, minDeviationRatio * Math.abs(ewma));
+    }
+
+    private void addWelford(double total) {
+        count++;
+        double delta = total - mean;
+        mean += delta / count;
+        m2 += delta * (total - mean);
+    }
+
+    private static double score(double difference, double variance, double minDeviation) {
+        if (Double.isNaN(variance)) {
+            return Double.NaN;
+        }
+        double deviation = Math.max(Math.sqrt(variance), minDeviation);
+        if (deviation == 0) {
+            return difference > 0 ? Double.POSITIVE_INFINITY : 0;
+        }
+        return difference / deviation;
+    }
+}
@@ -0,0 +1,75 @@
+package debezium.stats;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Continuously updated statistics of contribution totals for one population segment
+ * (a contribution type, or a type and sponsor). The configured percentile is recomputed on every update,
+ * so readers get both the mean and the percentile in constant time.
+ * <p>
+ * The statistics start empty and only cover contributions changed since, so an update of an older contribution
+ * removes an amount that was never added: such removals are ignored, and the update counts as a new sample.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class PopulationStats {
+    private long count;
+    private double sum;
+    private double percentile;
+    private double percentileValue = Double.NaN;
+    private QuantileSketch sketch = new QuantileSketch();
+
+    public PopulationStats(double relativeAccuracy) {
+        this.sketch = new QuantileSketch(relativeAccuracy);
+    }
+
+    /**
+     * Builds the key of the population segment of a contribution type.
+     *
+     * @param type The contribution type.
+     * @return The segment key.
+     */
+    public static String segmentKey(String type) {
+        return String.valueOf(type);
+    }
+
+    /**
+     * Builds the key of the population segment of a contribution type and sponsor.
+     *
+     * @param type      The contribution type.
+     * @param sponsorId The ID of the sponsor.
+     * @return The segment key.
+     */
+    public static String segmentKey(String type, Long sponsorId) {
+        return type + "|" + sponsorId;
+    }
+
+    /**
+     * Applies one contribution change to the statistics.
+     *
+     * @param update     The amounts removed and added by the change.
+     * @param percentile The percentile to keep precomputed, between 0 and 1.
+     * @return These statistics.
+     */
+    public PopulationStats apply(StatsUpdate update, double percentile) {
+        if (update.removed() != null && sketch.remove(update.removed())) {
+            count--;
+            sum -= update.removed();
+        }
+        count++;
+        sum += update.added();
+        sketch.add(update.added());
+        this.percentile = percentile;
+        this.percentileValue = percentile > 0 ? sketch.quantile(percentile) : Double.NaN;
+        return this;
+    }
+
+    @JsonIgnore
+    public double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+}
@@ -0,0 +1,156 @@
+package debezium.stats;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with relative-error guarantees (DDSketch).
+ * Positive values are counted in logarithmically sized buckets, so any quantile is returned within
+ * {@code relativeAccuracy} of its true value. Sketches with the same accuracy merge by adding bucket counts,
+ * and values can be removed again, which lets updates replace a previously added amount.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private double relativeAccuracy = DEFAULT_RELATIVE_ACCURACY;
+    private long count;
+    private long zeroCount;
+    private int minIndex;
+    private long[] counts = new long[0];
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double gamma;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double logGamma;
+
+    public QuantileSketch(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * Adds a value to the sketch. Zero and negative values are counted below every bucket.
+     *
+     * @param value The value to add.
+     */
+    public void add(double value) {
+        update(value, 1);
+    }
+
+    /**
+     * Removes a value previously added to the sketch. A value whose bucket is empty was never added, so it is
+     * ignored rather than driving the bucket negative.
+     *
+     * @param value The value to remove.
+     * @return true if the value was removed.
+     */
+    public boolean remove(double value) {
+        if (value <= 0) {
+            if (zeroCount <= 0) {
+                return false;
+            }
+        } else {
+            int index = index(value);
+            if (index < minIndex || index >= minIndex + counts.length || counts[index - minIndex] <= 0) {
+                return false;
+            }
+        }
+        update(value, -1);
+        return true;
+    }
+
+    /**
+     * Adds all values of another sketch with the same relative accuracy to this one.
+     *
+     * @param other The sketch to merge.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                bucket(other.minIndex + i, other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the value at the given quantile.
+     *
+     * @param quantile The quantile, between 0 and 1.
+     * @return The estimated value at the quantile, or NaN if the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = zeroCount;
+        if (rank <= seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 2 * Math.pow(gamma(), minIndex + i) / (gamma() + 1);
+            }
+        }
+        return 2 * Math.pow(gamma(), minIndex + counts.length - 1) / (gamma() + 1);
+    }
+
+    private void update(double value, long delta) {
+        count += delta;
+        if (value <= 0) {
+            zeroCount += delta;
+            return;
+        }
+        bucket(index(value), delta);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma());
+    }
+
+    private void bucket(int index, long delta) {
+        if (counts.length == 0) {
+            minIndex = index;
+            counts = new long[1];
+        } else if (index < minIndex) {
+            long[] grown = new long[counts.length + (minIndex - index)];
+            System.arraycopy(counts, 0, grown, minIndex - index, counts.length);
+            counts = grown;
+            minIndex = index;
+        } else if (index >= minIndex + counts.length) {
+            counts = Arrays.copyOf(counts, index - minIndex + 1);
+        }
+        counts[index - minIndex] += delta;
+    }
+
+    private double gamma() {
+        if (gamma == 0) {
+            gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        }
+        return gamma;
+    }
+
+    private double logGamma() {
+        if (logGamma == 0) {
+            logGamma = Math.log(gamma());
+        }
+        return logGamma;
+    }
+}
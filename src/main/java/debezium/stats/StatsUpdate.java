@@ -0,0 +1,10 @@
+package debezium.stats;
+
+/**
+ * The contribution totals removed from and added to a population segment by one change event.
+ *
+ * @param removed The total before an update, or null for new records.
+ * @param added   The total after the change.
+ */
+public record StatsUpdate(Double removed, double added) {
+}
@@ -0,0 +1,12 @@
+-- Progress of the contribution backfill, written in the same transaction as the flagged rows of each batch.
+create schema if not exists fraud;
+
+create table if not exists fraud.backfill_checkpoint
+(
+    name           varchar(100) primary key,
+    last_member_id bigint,
+    rows_read      bigint      not null default 0,
+    rows_flagged   bigint      not null default 0,
+    completed      boolean     not null default false,
+    updated_at     timestamptz not null default now()
+);
@@ -0,0 +1,179 @@
+package debezium.perf;
+
+import debezium.config.FraudProperties;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Produces synthetic Debezium change events of public.contributions and public.invoices at a target rate, to a
+ * broker or to files, in the format the connector of postgres-connector.json publishes with the JsonConverter:
+ * <pre>
+ * mvn -Pperf test-compile exec:exec -Dperf.main=debezium.perf.CdcLoadGenerator -Dperf.args="output=kafka rate=2000 records=1000000"
+ * </pre>
+ * Arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code output}: kafka or files (default files)</li>
+ *     <li>{@code bootstrap-servers}: the broker to write to (default $KAFKA_BOOTSTRAP_SERVERS or localhost:2255)</li>
+ *     <li>{@code dir}: the directory to write to (default target/cdc-load), one {@code <topic>.tsv} file per topic
+ *     with a tab separated key and envelope per line, which {@code kcat -P -K$'\t' -l} replays</li>
+ *     <li>{@code rate}: records per second, 0 for as fast as possible (default 1000)</li>
+ *     <li>{@code records}: records to produce (default 100000)</li>
+ *     <li>{@code topics}: contributions, invoices or all (default all)</li>
+ *     <li>{@code members}, {@code sponsors}, {@code customers}, {@code update-ratio}, {@code fraud-rate},
+ *     {@code invoice-share}, {@code schemas}, {@code seed}: the generated traffic, see {@link SyntheticChanges}</li>
+ * </ul>
+ */
+public final class CdcLoadGenerator {
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private CdcLoadGenerator() {
+    }
+
+    /**
+     * Where the generated records go.
+     */
+    private interface Sink extends AutoCloseable {
+        void write(SyntheticChanges.Change change) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PerfOptions options = new PerfOptions(args);
+        long records = options.number("records", 100_000);
+        double rate = options.decimal("rate", 1_000);
+        String topics = options.string("topics", "all");
+        SyntheticChanges changes = new SyntheticChanges(options, new FraudProperties(), Instant.now());
+
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        long fraud = 0;
+        long startNanos = System.nanoTime();
+        long nextReport = startNanos + REPORT_INTERVAL_NANOS;
+        try (Sink sink = sink(options)) {
+            for (long i = 0; i < records; i++) {
+                if (intervalNanos > 0) {
+                    // pace against the start, so that a slow write is caught up on instead of lowering the rate
+                    long wait = startNanos + i * intervalNanos - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                long timestamp = System.currentTimeMillis();
+                SyntheticChanges.Change change = switch (topics) {
+                    case "contributions" -> changes.nextContribution(timestamp);
+                    case "invoices" -> changes.nextInvoice(timestamp);
+                    case "all" -> changes.next(timestamp);
+                    default -> throw new IllegalArgumentException("Unknown topics: " + topics);
+                };
+                sink.write(change);
+                if (change.fraud()) {
+                    fraud++;
+                }
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report(i + 1, fraud, now - startNanos);
+                    nextReport = now + REPORT_INTERVAL_NANOS;
+                }
+            }
+        }
+        report(records, fraud, System.nanoTime() - startNanos);
+    }
+
+    private static void report(long records, long fraud, long elapsedNanos) {
+        System.out.printf(Locale.ROOT, "%d records in %.1f s (%.0f records/s), %d made suspicious%n",
+                records, elapsedNanos / 1e9, records * 1e9 / Math.max(1, elapsedNanos), fraud);
+    }
+
+    private static Sink sink(PerfOptions options) throws IOException {
+        String output = options.string("output", "files");
+        return switch (output) {
+            case "kafka" -> kafkaSink(options.string("bootstrap-servers",
+                    System.getenv().getOrDefault("KAFKA_BOOTSTRAP_SERVERS", "localhost:2255")));
+            case "files" -> fileSink(Path.of(options.string("dir", "target/cdc-load")));
+            default -> throw new IllegalArgumentException("Unknown output: " + output);
+        };
+    }
+
+    /**
+     * Writes to the broker like the connector does: string keys and values, partitioned by the key.
+     */
+    private static Sink kafkaSink(String bootstrapServers) {
+        Properties config = new Properties();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+        KafkaProducer<String, String> producer = new KafkaProducer<>(config);
+        AtomicLong failed = new AtomicLong();
+        AtomicReference<Exception> firstError = new AtomicReference<>();
+        return new Sink() {
+            @Override
+            public void write(SyntheticChanges.Change change) {
+                producer.send(new ProducerRecord<>(change.topic(), null, change.timestamp(), change.key(), change.value()),
+                        (metadata, exception) -> {
+                            if (exception != null && failed.getAndIncrement() == 0) {
+                                firstError.set(exception);
+                            }
+                        });
+            }
+
+            @Override
+            public void close() {
+                producer.close();
+                if (failed.get() > 0) {
+                    System.out.printf("%d records failed to send, first error: %s%n", failed.get(), firstError.get());
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes one file per topic, a tab separated key and envelope per line; JSON escapes tabs, so the
+     * separator is unambiguous.
+     */
+    private static Sink fileSink(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Map<String, Writer> writers = new HashMap<>();
+        return new Sink() {
+            @Override
+            public void write(SyntheticChanges.Change change) throws IOException {
+                Writer writer = writers.computeIfAbsent(change.topic(), topic -> {
+                    try {
+                        return Files.newBufferedWriter(dir.resolve(topic + ".tsv"), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.append(change.key()).append('\t').append(change.value()).append('\n');
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (Writer writer : writers.values()) {
+                    writer.close();
+                }
+                System.out.println("Written to " + dir.toAbsolutePath());
+            }
+        };
+    }
+}
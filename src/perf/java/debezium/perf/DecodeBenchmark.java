@@ -0,0 +1,117 @@
+package debezium.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import debezium.component.ChangeEventDecoder;
+import debezium.component.SchemaScaleCache;
+import debezium.config.CdcProperties;
+import debezium.dto.ChangeEvent;
+import debezium.dto.ContributionDto;
+import debezium.kafka.ProcessedRecordSerde;
+import debezium.model.Contribution;
+import debezium.service.FixedPoint;
+import debezium.service.UtilService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static debezium.service.UtilService.decodeDecimal;
+
+/**
+ * Measures decoding of a contribution change event, step by step: the former tree-based helpers
+ * ({@link TreeDecoding}) as the baseline, the streaming {@link ChangeEventDecoder}, decimal decoding, row conversion and output serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+    private TreeDecoding treeDecoding;
+    private ChangeEventDecoder decoder;
+    private ProcessedRecordSerde<Contribution> serde;
+    private String createEnvelope;
+    private String updateEnvelope;
+    private String encodedAmount;
+    private ContributionDto dto;
+    private Map<String, Integer> fieldScales;
+    private Contribution contribution;
+
+    @Setup
+    public void setUp() throws IOException {
+        UtilService utilService = new UtilService();
+        treeDecoding = new TreeDecoding(utilService.mapper);
+        decoder = new ChangeEventDecoder(utilService, new SchemaScaleCache(utilService, new CdcProperties()));
+        serde = new ProcessedRecordSerde<>(Contribution.class);
+
+        ContributionEnvelopes.Row before = new ContributionEnvelopes.Row(184_467, 2025, 30_112, 412,
+                new BigDecimal("1250.00"), new BigDecimal("1875.50"), "NORMAL", "MAR", "SS-30112", "ACTIVE");
+        ContributionEnvelopes.Row after = before.withAmounts(new BigDecimal("1312.50"), new BigDecimal("1968.75"));
+        createEnvelope = ContributionEnvelopes.create(after, 38_912_554_112L);
+        updateEnvelope = ContributionEnvelopes.update(before, after, 38_912_554_480L);
+        encodedAmount = ContributionEnvelopes.encodeDecimal(after.er());
+
+        ChangeEvent<ContributionDto> event = decoder.decode(createEnvelope, ContributionDto.class);
+        dto = event.after();
+        fieldScales = event.fieldScales();
+        contribution = dto.toContribution(fieldScales);
+        contribution.setReasonFlagged("&#128293 Contribution amount is suspiciously high: 3281.25 (Members' Average: 1562.50)");
+    }
+
+    @Benchmark
+    public Map<String, Integer> getFieldScales() {
+        return treeDecoding.getFieldScales(createEnvelope);
+    }
+
+    @Benchmark
+    public JsonNode beforeJson() {
+        return treeDecoding.beforeJson(updateEnvelope);
+    }
+
+    @Benchmark
+    public JsonNode afterJson() {
+        return treeDecoding.afterJson(createEnvelope);
+    }
+
+    @Benchmark
+    public ChangeEvent<ContributionDto> decodeEnvelope() throws IOException {
+        return decoder.decode(updateEnvelope, ContributionDto.class);
+    }
+
+    @Benchmark
+    public BigDecimal decodeDecimalBigDecimal() {
+        return decodeDecimal(encodedAmount, 2);
+    }
+
+    @Benchmark
+    public long decodeDecimalFixedPoint() {
+        return FixedPoint.decodeUnscaled(encodedAmount);
+    }
+
+    @Benchmark
+    public Contribution toContribution() {
+        return dto.toContribution(fieldScales);
+    }
+
+    @Benchmark
+    public String contributionToString() {
+        return contribution.toString();
+    }
+
+    @Benchmark
+    public byte[] contributionSerialize() {
+        return serde.serialize("processed_contributions_topic", contribution);
+    }
+}
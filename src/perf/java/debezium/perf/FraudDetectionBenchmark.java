@@ -0,0 +1,132 @@
+package debezium.perf;
+
+import debezium.component.ContributionFraudDetector;
+import debezium.component.PipelineMetrics;
+import debezium.config.FraudProperties;
+import debezium.dto.ContributionHistory;
+import debezium.dto.DetectionContext;
+import debezium.model.Contribution;
+import debezium.rules.ArrearsRule;
+import debezium.rules.ChangeRatioRule;
+import debezium.rules.DormancyRule;
+import debezium.rules.LookupExecutor;
+import debezium.rules.MaximumContributionRule;
+import debezium.rules.MemberAverageRule;
+import debezium.rules.PopulationAverageRule;
+import debezium.service.UtilService;
+import debezium.stats.PopulationStats;
+import debezium.stats.StatsUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures both {@link ContributionFraudDetector#detectFraud} paths, for new records and updates,
+ * with lookups answered by an in-memory {@link InMemoryContributionService} or by a detection context
+ * as the stream processor provides it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FraudDetectionBenchmark {
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+    private ContributionFraudDetector detector;
+    private Contribution before;
+    private Contribution after;
+    private DetectionContext detectionContext;
+
+    @Setup
+    public void setUp() {
+        FraudProperties fraudProperties = new FraudProperties();
+        UtilService utilService = new UtilService();
+        InMemoryContributionService contributionService = new InMemoryContributionService();
+        detector = new ContributionFraudDetector(contributionService, fraudProperties, List.of(
+                new MaximumContributionRule(fraudProperties),
+                new ChangeRatioRule(fraudProperties),
+                new ArrearsRule(fraudProperties, utilService),
+                new DormancyRule(fraudProperties),
+                new MemberAverageRule(fraudProperties),
+                new PopulationAverageRule(fraudProperties)),
+                new PipelineMetrics(new SimpleMeterRegistry()),
+                new LookupExecutor(fraudProperties));
+
+        // two years of monthly contributions of one member, plus the population it belongs to
+        Random random = new Random(42);
+        PopulationStats populationStats = new PopulationStats(fraudProperties.getPopulation().getRelativeAccuracy());
+        long recordId = 1;
+        for (int period = 0; period < 24; period++) {
+            Contribution co = contribution(recordId++, 2024 + period / 12, MONTHS[period % 12],
+                    new BigDecimal("1250.00").add(BigDecimal.valueOf(random.nextInt(5000), 2)));
+            contributionService.save(co);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            populationStats.apply(new StatsUpdate(null, 2500 + random.nextGaussian() * 650), 0);
+        }
+
+        LocalDate today = LocalDate.now();
+        int year = today.getYear();
+        String month = MONTHS[today.getMonthValue() - 1];
+        before = contribution(recordId, year, month, new BigDecimal("1300.00"));
+        after = contribution(recordId, year, month, new BigDecimal("2950.00"));
+        contributionService.save(before);
+
+        ContributionHistory history = contributionService.loadContributionHistory(after, fraudProperties.getHistorySize());
+        detectionContext = new DetectionContext(history, populationStats);
+    }
+
+    @Benchmark
+    public Optional<String> detectNewRecord() {
+        return detector.detectFraud(after);
+    }
+
+    @Benchmark
+    public Optional<String> detectUpdate() {
+        return detector.detectFraud(before, after);
+    }
+
+    @Benchmark
+    public Optional<String> detectNewRecordWithContext() {
+        return detector.detectFraud(after, detectionContext);
+    }
+
+    @Benchmark
+    public Optional<String> detectUpdateWithContext() {
+        return detector.detectFraud(before, after, detectionContext);
+    }
+
+    private static Contribution contribution(long recordId, int year, String month, BigDecimal total) {
+        Contribution co = new Contribution();
+        co.setRecordId(recordId);
+        co.setMemberId(30_112L);
+        co.setSponsorId(412L);
+        co.setType("NORMAL");
+        co.setYear(year);
+        co.setMonth(month);
+        co.setEe(total.multiply(new BigDecimal("0.40")).setScale(2, RoundingMode.HALF_UP));
+        co.setEr(total.subtract(co.getEe()));
+        co.setTotal(total);
+        co.setStatus("ACTIVE");
+        co.setSsno("SS-30112");
+        return co;
+    }
+}
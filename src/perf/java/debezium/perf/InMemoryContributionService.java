@@ -0,0 +1,113 @@
+package debezium.perf;
+
+import debezium.dto.ContributionHistory;
+import debezium.dto.PriorContributions;
+import debezium.model.Contribution;
+import debezium.service.ContributionService;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory stand-in for {@link ContributionService}, so the detection path can be measured without a database.
+ * Saved contributions are kept per record ID and answer the same lookups as the native queries.
+ */
+public class InMemoryContributionService extends ContributionService {
+    private final Map<Long, Contribution> byRecordId = new ConcurrentHashMap<>();
+
+    public InMemoryContributionService() {
+        super(null, null, null);
+    }
+
+    @Override
+    public void processContributions(List<Contribution> contributions) {
+        saveAll(contributions);
+    }
+
+    @Override
+    public void save(Contribution co) {
+        byRecordId.put(co.getRecordId(), co);
+    }
+
+    @Override
+    public void saveAll(List<Contribution> contributions) {
+        contributions.forEach(this::save);
+    }
+
+    @Override
+    public boolean existsContributionByRecordId(long id) {
+        return byRecordId.containsKey(id);
+    }
+
+    @Override
+    public PriorContributions getPriorContributions(Long contributionId, int numberOfMonths) {
+        List<Contribution> history = historyOf(contributionId, numberOfMonths);
+        if (history.isEmpty()) {
+            return PriorContributions.none(numberOfMonths);
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Contribution co : history) {
+            sum = sum.add(co.getEe()).add(co.getEr());
+        }
+        BigDecimal average = sum.signum() == 0 ? null : sum.divide(BigDecimal.valueOf(history.size()), RoundingMode.HALF_UP);
+        return new PriorContributions(history.get(0), average, numberOfMonths);
+    }
+
+    @Override
+    public ContributionHistory loadContributionHistory(Contribution co, int limit) {
+        ContributionHistory history = new ContributionHistory();
+        for (Contribution other : byRecordId.values()) {
+            if (sameMember(co, other)) {
+                history.record(ContributionHistory.entryOf(other), limit);
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public Contribution getAverageContribution() {
+        if (byRecordId.isEmpty()) {
+            return null;
+        }
+        BigDecimal ee = BigDecimal.ZERO;
+        BigDecimal er = BigDecimal.ZERO;
+        for (Contribution co : byRecordId.values()) {
+            ee = ee.add(co.getEe());
+            er = er.add(co.getEr());
+        }
+        BigDecimal count = BigDecimal.valueOf(byRecordId.size());
+        Contribution average = new Contribution();
+        average.setEe(ee.divide(count, RoundingMode.HALF_UP));
+        average.setEr(er.divide(count, RoundingMode.HALF_UP));
+        return average;
+    }
+
+    /**
+     * Returns the contributions of the same member, sponsor and type before the given one, newest first.
+     */
+    private List<Contribution> historyOf(Long contributionId, int limit) {
+        Contribution co = byRecordId.get(contributionId);
+        if (co == null) {
+            return List.of();
+        }
+        int period = co.period();
+        List<Contribution> history = new ArrayList<>();
+        for (Contribution other : byRecordId.values()) {
+            if (sameMember(co, other) && other.period() < period) {
+                history.add(other);
+            }
+        }
+        history.sort((a, b) -> Integer.compare(b.period(), a.period()));
+        return history.size() > limit ? history.subList(0, limit) : history;
+    }
+
+    private static boolean sameMember(Contribution a, Contribution b) {
+        return a.getMemberId().equals(b.getMemberId())
+                && a.getSponsorId().equals(b.getSponsorId())
+                && a.getType().equals(b.getType());
+    }
+}
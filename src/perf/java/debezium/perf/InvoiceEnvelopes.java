@@ -0,0 +1,149 @@
+package debezium.perf;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds Debezium JsonConverter envelopes of public.invoices, as the Postgres connector publishes them
+ * with {@code schemas.enable=true}: full schema block, before/after rows with Base64 encoded decimals and
+ * source metadata.
+ */
+public final class InvoiceEnvelopes {
+    /**
+     * The scale of invoices.amount, as configured under {@code cdc.field-scales} for schemaless events.
+     */
+    public static final int AMOUNT_SCALE = 5;
+
+    private static final String ROW_SCHEMA = "{\"type\":\"struct\",\"fields\":["
+            + "{\"type\":\"int64\",\"optional\":false,\"default\":0,\"field\":\"id\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"field\":\"customer_id\"},"
+            + "{\"type\":\"bytes\",\"optional\":true,\"name\":\"org.apache.kafka.connect.data.Decimal\",\"version\":1,"
+            + "\"parameters\":{\"scale\":\"" + AMOUNT_SCALE + "\",\"connect.decimal.precision\":\"15\"},\"field\":\"amount\"}"
+            + "],\"optional\":true,\"name\":\"debezium_master.public.invoices.Value\",\"field\":\"%s\"}";
+
+    private static final String KEY_SCHEMA = "{\"schema\":{\"type\":\"struct\",\"fields\":["
+            + "{\"type\":\"int64\",\"optional\":false,\"default\":0,\"field\":\"id\"}"
+            + "],\"optional\":false,\"name\":\"debezium_master.public.invoices.Key\"},\"payload\":{\"id\":";
+
+    private static final String SCHEMA = "{\"type\":\"struct\",\"fields\":["
+            + String.format(ROW_SCHEMA, "before") + ","
+            + String.format(ROW_SCHEMA, "after") + ","
+            + "{\"type\":\"struct\",\"fields\":["
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"version\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"connector\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"name\"},"
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"ts_ms\"},"
+            + "{\"type\":\"string\",\"optional\":true,\"name\":\"io.debezium.data.Enum\",\"version\":1,"
+            + "\"parameters\":{\"allowed\":\"true,last,false,incremental\"},\"default\":\"false\",\"field\":\"snapshot\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"db\"},"
+            + "{\"type\":\"string\",\"optional\":true,\"field\":\"sequence\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"schema\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"table\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"field\":\"txId\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"field\":\"lsn\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"field\":\"xmin\"}"
+            + "],\"optional\":false,\"name\":\"io.debezium.connector.postgresql.Source\",\"field\":\"source\"},"
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"op\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"field\":\"ts_ms\"},"
+            + "{\"type\":\"struct\",\"fields\":["
+            + "{\"type\":\"string\",\"optional\":false,\"field\":\"id\"},"
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"total_order\"},"
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"data_collection_order\"}"
+            + "],\"optional\":true,\"name\":\"event.block\",\"version\":1,\"field\":\"transaction\"}"
+            + "],\"optional\":false,\"name\":\"debezium_master.public.invoices.Envelope\",\"version\":1}";
+
+    private InvoiceEnvelopes() {
+    }
+
+    /**
+     * One row of public.invoices.
+     */
+    public record Row(long id, long customerId, BigDecimal amount) {
+
+        public Row withAmount(BigDecimal amount) {
+            return new Row(id, customerId, amount);
+        }
+    }
+
+    /**
+     * Builds the record key, as the JsonConverter publishes the primary key.
+     *
+     * @param id         The row ID.
+     * @param withSchema Whether to include the schema block, as with {@code schemas.enable=true}.
+     * @return The raw JSON of the key.
+     */
+    public static String key(long id, boolean withSchema) {
+        return withSchema ? KEY_SCHEMA + id + "}}" : "{\"id\":" + id + "}";
+    }
+
+    /**
+     * @return The envelope of an insert of the given row.
+     */
+    public static String create(Row after, long lsn) {
+        return envelope("c", null, after, lsn, true);
+    }
+
+    /**
+     * @return The envelope of an update of the given row.
+     */
+    public static String update(Row before, Row after, long lsn) {
+        return envelope("u", before, after, lsn, true);
+    }
+
+    /**
+     * Builds a change event envelope.
+     *
+     * @param op         The Debezium op code.
+     * @param before     The row before the change, or null.
+     * @param after      The row after the change, or null.
+     * @param lsn        The log sequence number of the change.
+     * @param withSchema Whether to include the schema block, as with {@code schemas.enable=true}.
+     * @return The raw JSON of the envelope.
+     */
+    public static String envelope(String op, Row before, Row after, long lsn, boolean withSchema) {
+        return envelope(op, before, after, lsn, 1_750_000_000_000L + lsn / 1000, withSchema);
+    }
+
+    /**
+     * Builds a change event envelope committed at the given time.
+     *
+     * @param op         The Debezium op code.
+     * @param before     The row before the change, or null.
+     * @param after      The row after the change, or null.
+     * @param lsn        The log sequence number of the change.
+     * @param tsMs       The commit time of the change in epoch milliseconds.
+     * @param withSchema Whether to include the schema block, as with {@code schemas.enable=true}.
+     * @return The raw JSON of the envelope.
+     */
+    public static String envelope(String op, Row before, Row after, long lsn, long tsMs, boolean withSchema) {
+        StringBuilder json = new StringBuilder(withSchema ? 3072 : 512);
+        if (withSchema) {
+            json.append("{\"schema\":").append(SCHEMA).append(",\"payload\":");
+        }
+        json.append("{\"before\":");
+        row(json, before);
+        json.append(",\"after\":");
+        row(json, after);
+        json.append(",\"source\":{\"version\":\"2.7.3.Final\",\"connector\":\"postgresql\",\"name\":\"debezium_master\",")
+                .append("\"ts_ms\":").append(tsMs)
+                .append(",\"snapshot\":\"false\",\"db\":\"postgres\",\"sequence\":\"[null,\\\"").append(lsn).append("\\\"]\",")
+                .append("\"schema\":\"public\",\"table\":\"invoices\",\"txId\":").append(lsn / 64)
+                .append(",\"lsn\":").append(lsn).append(",\"xmin\":null}")
+                .append(",\"op\":\"").append(op).append("\",\"ts_ms\":").append(tsMs + 7)
+                .append(",\"transaction\":null}");
+        if (withSchema) {
+            json.append('}');
+        }
+        return json.toString();
+    }
+
+    private static void row(StringBuilder json, Row row) {
+        if (row == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"id\":").append(row.id())
+                .append(",\"customer_id\":").append(row.customerId())
+                .append(",\"amount\":\"").append(ContributionEnvelopes.encodeDecimal(row.amount().setScale(AMOUNT_SCALE)))
+                .append("\"}");
+    }
+}
@@ -0,0 +1,41 @@
+package debezium.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code key=value} arguments of the perf command line tools. Arguments without '=' are ignored, so the
+ * default {@code perf.args} of the profile does no harm.
+ */
+final class PerfOptions {
+    private final Map<String, String> values = new HashMap<>();
+
+    PerfOptions(String[] args) {
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split > 0) {
+                values.put(arg.substring(0, split), arg.substring(split + 1));
+            }
+        }
+    }
+
+    String string(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int integer(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    long number(String name, long defaultValue) {
+        return values.containsKey(name) ? Long.parseLong(values.get(name)) : defaultValue;
+    }
+
+    double decimal(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    boolean flag(String name, boolean defaultValue) {
+        return values.containsKey(name) ? Boolean.parseBoolean(values.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,237 @@
+package debezium.perf;
+
+import debezium.config.FraudProperties;
+import debezium.enums.DebeziumTopic;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates production-like Debezium change events of public.contributions and public.invoices.
+ * <p>
+ * Contributions: sponsors are Zipf sized, so a few employ most members, and every member has a log-normal salary
+ * and contributes monthly, period after period, 5% of it as employee and 10% as employer share. Invoices: every
+ * customer has a log-normal typical amount that single invoices vary around. A share of the changes updates the
+ * last row of a member or customer with a small correction and carries its before-image.
+ * <p>
+ * A share of the changes ({@code fraud-rate}) starts something suspicious, cycling through what the fraud rules
+ * look for: oversized, arrears and after-dormancy contributions, large contribution amendments, invoice bursts and
+ * invoice spikes. Every invoice of a burst counts as suspicious, and a spike only stands out once the customer has
+ * a profile, so the flagged invoices do not match the injected ones one to one.
+ */
+final class SyntheticChanges {
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final BigDecimal EE_RATE = new BigDecimal("0.05");
+    private static final BigDecimal ER_RATE = new BigDecimal("0.10");
+
+    private final Random random;
+    private final FraudProperties fraudProperties;
+    private final boolean withSchema;
+    private final double updateRatio;
+    private final double fraudRate;
+    private final double invoiceShare;
+
+    private final long[] memberSponsor;
+    private final double[] memberSalary;
+    private final String[] memberType;
+    private final int[] memberPeriod;
+    private final ContributionEnvelopes.Row[] memberLastRow;
+    private final double[] customerTypical;
+    private final InvoiceEnvelopes.Row[] customerLastRow;
+
+    private long lsn = 33_000_000L;
+    private long nextContributionId = 1;
+    private long nextInvoiceId = 1;
+    private int contributionFraud;
+    private int invoiceFraud;
+    private int burstCustomer;
+    private int burstRemaining;
+
+    /**
+     * A generated change event.
+     *
+     * @param topic     The Debezium topic of the change.
+     * @param key       The raw JSON of the record key.
+     * @param value     The raw JSON of the envelope.
+     * @param timestamp The commit time of the change in epoch milliseconds.
+     * @param fraud     Whether the change was made suspicious.
+     */
+    record Change(String topic, String key, String value, long timestamp, boolean fraud) {
+    }
+
+    /**
+     * @param options         {@code members}, {@code sponsors}, {@code customers}, {@code update-ratio},
+     *                        {@code fraud-rate}, {@code invoice-share}, {@code schemas} and {@code seed}.
+     * @param fraudProperties The rule thresholds that injected fraud should exceed.
+     * @param start           The time of the first change, which sets the current contribution period.
+     */
+    SyntheticChanges(PerfOptions options, FraudProperties fraudProperties, Instant start) {
+        this.random = new Random(options.number("seed", 42));
+        this.fraudProperties = fraudProperties;
+        this.withSchema = options.flag("schemas", true);
+        this.updateRatio = options.decimal("update-ratio", 0.2);
+        this.fraudRate = options.decimal("fraud-rate", 0.01);
+        this.invoiceShare = options.decimal("invoice-share", 0.3);
+
+        int members = options.integer("members", 100_000);
+        int sponsors = options.integer("sponsors", 500);
+        int customers = options.integer("customers", 20_000);
+        YearMonth current = YearMonth.from(start.atZone(ZoneOffset.UTC));
+        int currentPeriod = current.getYear() * 12 + current.getMonthValue() - 1;
+
+        double[] sponsorCdf = zipfCdf(sponsors, 1.1);
+        memberSponsor = new long[members];
+        memberSalary = new double[members];
+        memberType = new String[members];
+        memberPeriod = new int[members];
+        memberLastRow = new ContributionEnvelopes.Row[members];
+        for (int member = 0; member < members; member++) {
+            int sponsor = Arrays.binarySearch(sponsorCdf, random.nextDouble());
+            memberSponsor[member] = 1_000L + (sponsor < 0 ? -sponsor - 1 : sponsor);
+            memberSalary[member] = Math.min(60_000, logNormal(3_000, 0.5));
+            memberType[member] = random.nextDouble() < 0.05 ? "VOLUNTARY" : "NORMAL";
+            //note: members are spread over the last few periods, within what the arrears rule accepts
+            memberPeriod[member] = currentPeriod - random.nextInt(Math.max(1, fraudProperties.getArrearsMonths() / 2));
+        }
+        customerTypical = new double[customers];
+        customerLastRow = new InvoiceEnvelopes.Row[customers];
+        for (int customer = 0; customer < customers; customer++) {
+            customerTypical[customer] = Math.min(500_000, logNormal(500, 1.0));
+        }
+    }
+
+    /**
+     * @param timestamp The commit time of the change in epoch milliseconds.
+     * @return A contribution or an invoice change, mixed by {@code invoice-share}.
+     */
+    Change next(long timestamp) {
+        return burstRemaining > 0 || random.nextDouble() < invoiceShare ? nextInvoice(timestamp) : nextContribution(timestamp);
+    }
+
+    /**
+     * @param timestamp The commit time of the change in epoch milliseconds.
+     * @return The next contribution change.
+     */
+    Change nextContribution(long timestamp) {
+        lsn += 64 + random.nextInt(448);
+        int member = random.nextInt(memberSponsor.length);
+        ContributionEnvelopes.Row last = memberLastRow[member];
+        boolean fraud = random.nextDouble() < fraudRate;
+        int kind = fraud ? contributionFraud++ % 4 : -1;
+        if (last == null && (kind == 2 || kind == 3)) {
+            kind = 0; // dormancy and amendments need an earlier contribution
+        }
+
+        if (kind == 3 || (!fraud && last != null && random.nextDouble() < updateRatio)) {
+            // an amendment of the last contribution, by a small correction or, as fraud, a large factor
+            double factor = kind == 3
+                    ? fraudProperties.getChangeRatio().getMaxIncrease() * (1.2 + random.nextDouble())
+                    : 0.97 + random.nextDouble() * 0.06;
+            ContributionEnvelopes.Row after = last.withAmounts(scale(last.ee(), factor), scale(last.er(), factor));
+            memberLastRow[member] = after;
+            return contribution(after.id(), ContributionEnvelopes.envelope("u", last, after, lsn, timestamp, withSchema), timestamp, fraud);
+        }
+
+        double salary = memberSalary[member] * (0.95 + random.nextDouble() * 0.1);
+        int period = memberPeriod[member];
+        if (kind == 0) {
+            // above the maximum contribution, and far above the member's average
+            salary = fraudProperties.getMaxContribution().doubleValue() / 0.15 * (1.1 + random.nextDouble());
+        } else if (kind == 1) {
+            // a late posting for a period long gone; the member's own periods go on
+            period -= fraudProperties.getArrearsMonths() + 1 + random.nextInt(12);
+        } else if (kind == 2) {
+            period += fraudProperties.getDormantMonths() + random.nextInt(6);
+        }
+        if (kind != 1) {
+            memberPeriod[member] = period + 1;
+        }
+        BigDecimal pay = BigDecimal.valueOf(salary);
+        ContributionEnvelopes.Row row = new ContributionEnvelopes.Row(nextContributionId++, period / 12, 100_000L + member,
+                memberSponsor[member], pay.multiply(EE_RATE).setScale(2, RoundingMode.HALF_UP),
+                pay.multiply(ER_RATE).setScale(2, RoundingMode.HALF_UP), memberType[member], MONTHS[period % 12],
+                String.format("SS%08d", member), "ACTIVE");
+        memberLastRow[member] = row;
+        return contribution(row.id(), ContributionEnvelopes.envelope("c", null, row, lsn, timestamp, withSchema), timestamp, fraud);
+    }
+
+    /**
+     * @param timestamp The commit time of the change in epoch milliseconds.
+     * @return The next invoice change.
+     */
+    Change nextInvoice(long timestamp) {
+        lsn += 64 + random.nextInt(448);
+        boolean fraud;
+        boolean spike = false;
+        int customer;
+        if (burstRemaining > 0) {
+            customer = burstCustomer;
+            burstRemaining--;
+            fraud = true;
+        } else {
+            customer = random.nextInt(customerTypical.length);
+            fraud = random.nextDouble() < fraudRate;
+            if (fraud && invoiceFraud++ % 2 == 0) {
+                // this and the following invoices of the customer exceed the burst count within one window
+                burstCustomer = customer;
+                burstRemaining = fraudProperties.getInvoices().getBurstCount() + random.nextInt(10);
+            } else {
+                spike = fraud;
+            }
+        }
+
+        InvoiceEnvelopes.Row last = customerLastRow[customer];
+        if (!fraud && last != null && random.nextDouble() < updateRatio) {
+            InvoiceEnvelopes.Row after = last.withAmount(scale(last.amount(), 0.9 + random.nextDouble() * 0.2));
+            customerLastRow[customer] = after;
+            return invoice(after.id(), InvoiceEnvelopes.envelope("u", last, after, lsn, timestamp, withSchema), timestamp, false);
+        }
+        double amount = customerTypical[customer] * logNormal(1, 0.3);
+        if (spike) {
+            amount *= fraudProperties.getInvoices().getTotalMultiplier() * (2 + random.nextDouble() * 8);
+        }
+        InvoiceEnvelopes.Row row = new InvoiceEnvelopes.Row(nextInvoiceId++, 500_000L + customer,
+                BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP));
+        customerLastRow[customer] = row;
+        return invoice(row.id(), InvoiceEnvelopes.envelope("c", null, row, lsn, timestamp, withSchema), timestamp, fraud);
+    }
+
+    private Change contribution(long id, String envelope, long timestamp, boolean fraud) {
+        return new Change(DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName(), ContributionEnvelopes.key(id, withSchema),
+                envelope, timestamp, fraud);
+    }
+
+    private Change invoice(long id, String envelope, long timestamp, boolean fraud) {
+        return new Change(DebeziumTopic.DEBEZIUM_INVOICES.getTopicName(), InvoiceEnvelopes.key(id, withSchema),
+                envelope, timestamp, fraud);
+    }
+
+    private double logNormal(double median, double sigma) {
+        return median * Math.exp(sigma * random.nextGaussian());
+    }
+
+    private static BigDecimal scale(BigDecimal amount, double factor) {
+        return amount.multiply(BigDecimal.valueOf(factor)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * @return The cumulative distribution of Zipf ranks 0..n-1 with the given exponent.
+     */
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cdf[rank] /= sum;
+        }
+        return cdf;
+    }
+}
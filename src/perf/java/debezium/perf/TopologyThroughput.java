@@ -0,0 +1,384 @@
+package debezium.perf;
+
+import debezium.component.ChangeEventDecoder;
+import debezium.component.ContributionFraudDetector;
+import debezium.component.PipelineMetrics;
+import debezium.component.SchemaScaleCache;
+import debezium.config.CdcProperties;
+import debezium.config.FraudProperties;
+import debezium.config.TopicProperties;
+import debezium.enums.DebeziumTopic;
+import debezium.enums.KTopic;
+import debezium.kafka.DeadLetterExceptionHandler;
+import debezium.kafka.DeadLetterPublisher;
+import debezium.kafka.KContributionStreamConfig;
+import debezium.kafka.KInvoiceStreamConfig;
+import debezium.rules.ArrearsRule;
+import debezium.rules.ChangeRatioRule;
+import debezium.rules.DormancyRule;
+import debezium.rules.LookupExecutor;
+import debezium.rules.MaximumContributionRule;
+import debezium.rules.MemberAverageRule;
+import debezium.rules.PopulationAverageRule;
+import debezium.service.InvoiceService;
+import debezium.service.UtilService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Pushes generated Debezium envelopes through the contribution and invoice topologies in a
+ * {@link TopologyTestDriver}, with in-memory stand-ins for the database, and reports throughput, per-record
+ * latency percentiles and allocation. Needs neither a broker nor Postgres, so it runs offline in the build:
+ * <pre>
+ * mvn -Pperf test-compile exec:exec -Dperf.main=debezium.perf.TopologyThroughput -Dperf.args="records=50000"
+ * </pre>
+ * Arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code topology}: contributions, invoices or all (default all)</li>
+ *     <li>{@code records}, {@code warmup}: measured and unmeasured records per topology (default 50000, 10000)</li>
+ *     <li>{@code members}, {@code sponsors}, {@code customers}, {@code update-ratio}, {@code fraud-rate}:
+ *     the generated traffic, see {@link SyntheticChanges}</li>
+ *     <li>{@code poison-rate}: share of malformed envelopes (default 0)</li>
+ *     <li>{@code batch}: run contribution detection in batches (default false)</li>
+ *     <li>{@code in-memory-stores}: keep the state stores in memory instead of RocksDB (default true)</li>
+ *     <li>{@code concurrent}: run the rules' database lookups concurrently (default true)</li>
+ *     <li>{@code min-records-per-second}, {@code max-p99-micros}: fail with exit code 1 below / above these;
+ *     prefixed with a topology name, e.g. {@code invoices.min-records-per-second}, they apply to that topology only</li>
+ * </ul>
+ * The driver processes each record synchronously, repartition topics included, so the latency of a record
+ * is the time it takes to pass through the whole topology on one thread. The driver also commits after every
+ * record, which with RocksDB flushes every store and writes its checkpoint file, so the stores are kept in memory
+ * unless asked otherwise. The time of each pipeline stage, from {@link PipelineMetrics}, is reported as well:
+ * it covers the topology's own work only.
+ * <p>
+ * The perf profile runs the harness in the {@code test} phase, so {@code mvn -Pperf test} fails on a regression
+ * beyond the thresholds given in {@code perf.topology.args}. Its defaults leave about a third of the throughput
+ * measured on a developer machine, so that slower CI runners pass and a regression of that order does not.
+ */
+public final class TopologyThroughput {
+    private static final String POISON = "{\"schema\":{\"type\":\"struct\"},\"payload\":{\"op\":\"c\",\"after\":{\"id\":";
+
+    private final PerfOptions options;
+    private final Random random;
+    private final long start = System.currentTimeMillis();
+
+    private TopologyThroughput(PerfOptions options) {
+        this.options = options;
+        this.random = new Random(options.number("seed", 42));
+    }
+
+    public static void main(String[] args) throws IOException {
+        PerfOptions options = new PerfOptions(args);
+        TopologyThroughput harness = new TopologyThroughput(options);
+        String topology = options.string("topology", "all");
+
+        List<Result> results = new ArrayList<>();
+        if (topology.equals("all") || topology.equals("contributions")) {
+            results.add(harness.runContributions());
+        }
+        if (topology.equals("all") || topology.equals("invoices")) {
+            results.add(harness.runInvoices());
+        }
+        if (results.isEmpty()) {
+            throw new IllegalArgumentException("Unknown topology: " + topology);
+        }
+
+        System.out.printf("%n%-14s %9s %11s %8s %8s %8s %9s %9s %11s %10s %7s %8s %8s%n", "topology", "records",
+                "records/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "alloc B/rec", "alloc MB/s", "gc ms",
+                "flagged", "dead");
+        boolean failed = false;
+        for (Result result : results) {
+            System.out.println(result);
+            failed |= harness.violatesThresholds(result);
+        }
+        System.out.printf("%n%-14s %-60s %9s %9s%n", "topology", "stage", "count", "mean us");
+        for (Result result : results) {
+            for (StageTime stage : result.stages()) {
+                System.out.printf(Locale.ROOT, "%-14s %-60s %9d %9.1f%n", result.topology(), stage.name(), stage.count(), stage.meanMicros());
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the contribution topology: inserts of monthly contributions per member and sponsor, and updates of
+     * earlier ones with their before-images.
+     */
+    private Result runContributions() throws IOException {
+        FraudProperties fraudProperties = new FraudProperties();
+        fraudProperties.getBatch().setEnabled(options.flag("batch", false));
+        fraudProperties.getLookups().setConcurrent(options.flag("concurrent", true));
+        UtilService utilService = new UtilService();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(registry);
+        InMemoryContributionService contributionService = new InMemoryContributionService();
+        ContributionFraudDetector detector = new ContributionFraudDetector(contributionService, fraudProperties, List.of(
+                new MaximumContributionRule(fraudProperties),
+                new ChangeRatioRule(fraudProperties),
+                new ArrearsRule(fraudProperties, utilService),
+                new DormancyRule(fraudProperties),
+                new MemberAverageRule(fraudProperties),
+                new PopulationAverageRule(fraudProperties)),
+                pipelineMetrics,
+                new LookupExecutor(fraudProperties));
+        CdcProperties cdcProperties = cdcProperties();
+        MockProducer<byte[], byte[]> deadLetters = deadLetterProducer();
+        DeadLetterPublisher deadLetterPublisher = deadLetterPublisher(deadLetters, utilService);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        new KContributionStreamConfig(detector, contributionService, decoder(utilService, cdcProperties), utilService,
+                fraudProperties, cdcProperties, new TopicProperties(), pipelineMetrics, deadLetterPublisher).stream(builder);
+
+        return measure("contributions", builder, registry, deadLetters, DebeziumTopic.DEBEZIUM_CONTRIBUTIONS.getTopicName(),
+                KTopic.PROCESSED_CONTRIBUTIONS_TOPIC.getTopicName(), deadLetterPublisher,
+                changes(fraudProperties)::nextContribution);
+    }
+
+    /**
+     * Runs the invoice topology: invoices of customers spread over time, with injected bursts and updates.
+     */
+    private Result runInvoices() throws IOException {
+        FraudProperties fraudProperties = new FraudProperties();
+        UtilService utilService = new UtilService();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(registry);
+        CdcProperties cdcProperties = cdcProperties();
+        MockProducer<byte[], byte[]> deadLetters = deadLetterProducer();
+        DeadLetterPublisher deadLetterPublisher = deadLetterPublisher(deadLetters, utilService);
+        // only the duplicate check of replayed inserts reaches the database
+        InvoiceService invoiceService = new InvoiceService(null, null) {
+            @Override
+            public boolean existsInvoiceByRecordId(long id) {
+                return false;
+            }
+        };
+
+        StreamsBuilder builder = new StreamsBuilder();
+        new KInvoiceStreamConfig(invoiceService, decoder(utilService, cdcProperties), utilService, fraudProperties,
+                cdcProperties, pipelineMetrics).invoicesStream(builder);
+
+        return measure("invoices", builder, registry, deadLetters, DebeziumTopic.DEBEZIUM_INVOICES.getTopicName(),
+                KTopic.PROCESSED_INVOICES_TOPIC.getTopicName(), deadLetterPublisher,
+                changes(fraudProperties)::nextInvoice);
+    }
+
+    /**
+     * Pipes warm-up and measured records through the topology, timing each record and counting the bytes
+     * the thread allocates while processing it. Envelopes are generated outside the timed sections.
+     * Stage times are the difference of the pipeline timers between the end of the warm-up and the end of the run.
+     */
+    private Result measure(String name, StreamsBuilder builder, MeterRegistry registry, MockProducer<byte[], byte[]> deadLetters, String inputTopic,
+                           String outputTopic, DeadLetterPublisher deadLetterPublisher, LongFunction<SyntheticChanges.Change> generator) throws IOException {
+        int warmup = options.integer("warmup", 10_000);
+        int records = options.integer("records", 50_000);
+        double poisonRate = options.decimal("poison-rate", 0);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Path stateDir = Files.createTempDirectory("topology-throughput");
+
+        Properties config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, "topology-throughput");
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092"); // never contacted by the driver
+        config.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        config.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        config.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class);
+        config.put(StreamsConfig.PROCESSING_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class);
+        config.put(StreamsConfig.DEFAULT_PRODUCTION_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class);
+        config.put(DeadLetterPublisher.CONFIG, deadLetterPublisher);
+
+        long[] latencies = new long[records];
+        long allocated = 0;
+        long elapsed = 0;
+        long flagged;
+        long gcStart = gcMillis();
+        Map<String, long[]> stagesAtWarmup = stageTotals(registry);
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(), config)) {
+            TestInputTopic<String, String> input = driver.createInputTopic(inputTopic, new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, byte[]> output = driver.createOutputTopic(outputTopic, new StringDeserializer(), new ByteArrayDeserializer());
+            for (int i = 0; i < warmup + records; i++) {
+                long timestamp = start + i * 1_000L;
+                SyntheticChanges.Change change = generator.apply(timestamp);
+                String envelope = random.nextDouble() < poisonRate ? POISON : change.value();
+
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                input.pipeInput(change.key(), envelope, timestamp);
+                long latency = System.nanoTime() - start;
+                long allocatedAfter = threads.getCurrentThreadAllocatedBytes();
+
+                if (i >= warmup) {
+                    latencies[i - warmup] = latency;
+                    elapsed += latency;
+                    allocated += allocatedAfter - allocatedBefore;
+                }
+                if (i == warmup) {
+                    output.readValuesToList();
+                    deadLetters.clear();
+                    gcStart = gcMillis();
+                    stagesAtWarmup = stageTotals(registry);
+                }
+            }
+            flagged = output.getQueueSize();
+        } finally {
+            FileSystemUtils.deleteRecursively(stateDir);
+        }
+        Arrays.sort(latencies);
+        List<StageTime> stages = new ArrayList<>();
+        for (Map.Entry<String, long[]> totals : stageTotals(registry).entrySet()) {
+            long[] before = stagesAtWarmup.getOrDefault(totals.getKey(), new long[2]);
+            long count = totals.getValue()[0] - before[0];
+            if (count > 0) {
+                stages.add(new StageTime(totals.getKey(), count, (totals.getValue()[1] - before[1]) / 1e3 / count));
+            }
+        }
+        return new Result(name, records, elapsed, latencies, allocated, gcMillis() - gcStart, flagged, deadLetters.history().size(), stages);
+    }
+
+    /**
+     * @return The count and total nanoseconds of every pipeline timer, by meter name and tags.
+     */
+    private static Map<String, long[]> stageTotals(MeterRegistry registry) {
+        Map<String, long[]> totals = new TreeMap<>();
+        for (Meter meter : registry.getMeters()) {
+            if (!(meter instanceof Timer timer) || !timer.getId().getName().startsWith("pipeline.")) {
+                continue;
+            }
+            StringBuilder stage = new StringBuilder(timer.getId().getName());
+            for (Tag tag : timer.getId().getTags()) {
+                if (!tag.getKey().equals("topic")) {
+                    stage.append(' ').append(tag.getValue());
+                }
+            }
+            totals.put(stage.toString(), new long[]{timer.count(), (long) timer.totalTime(TimeUnit.NANOSECONDS)});
+        }
+        return totals;
+    }
+
+    /**
+     * The time spent in one pipeline stage per event after the warm-up.
+     */
+    private record StageTime(String name, long count, double meanMicros) {
+    }
+
+    /**
+     * The measurements of one topology.
+     */
+    private record Result(String topology, int records, long elapsedNanos, long[] sortedLatencies, long allocatedBytes,
+                          long gcMillis, long flagged, int deadLetters, List<StageTime> stages) {
+
+        double recordsPerSecond() {
+            return records * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        double percentileMicros(double percentile) {
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-14s %9d %11.0f %8.1f %8.1f %8.1f %9.1f %9.1f %11d %10.1f %7d %8d %8d",
+                    topology, records, recordsPerSecond(), percentileMicros(0.5), percentileMicros(0.9),
+                    percentileMicros(0.99), percentileMicros(0.999), percentileMicros(1),
+                    allocatedBytes / Math.max(1, records), allocatedBytes / 1e6 / Math.max(1e-9, elapsedNanos / 1e9),
+                    gcMillis, flagged, deadLetters);
+        }
+    }
+
+    private boolean violatesThresholds(Result result) {
+        boolean violated = false;
+        double minRecordsPerSecond = threshold(result, "min-records-per-second");
+        if (minRecordsPerSecond > 0 && result.recordsPerSecond() < minRecordsPerSecond) {
+            System.out.printf(Locale.ROOT, "FAIL %s: %.0f records/s is below %.0f%n", result.topology(), result.recordsPerSecond(), minRecordsPerSecond);
+            violated = true;
+        }
+        double maxP99Micros = threshold(result, "max-p99-micros");
+        if (maxP99Micros > 0 && result.percentileMicros(0.99) > maxP99Micros) {
+            System.out.printf(Locale.ROOT, "FAIL %s: p99 of %.1f us is above %.1f us%n", result.topology(), result.percentileMicros(0.99), maxP99Micros);
+            violated = true;
+        }
+        return violated;
+    }
+
+    private double threshold(Result result, String name) {
+        return options.decimal(result.topology() + "." + name, options.decimal(name, 0));
+    }
+
+    private CdcProperties cdcProperties() {
+        CdcProperties cdcProperties = new CdcProperties();
+        cdcProperties.setInMemoryStores(options.flag("in-memory-stores", true));
+        return cdcProperties;
+    }
+
+    private static ChangeEventDecoder decoder(UtilService utilService, CdcProperties cdcProperties) {
+        return new ChangeEventDecoder(utilService, new SchemaScaleCache(utilService, cdcProperties));
+    }
+
+    /**
+     * A producer that keeps the dead letters in memory; the template closes it after every send, so close is a no-op.
+     */
+    private static MockProducer<byte[], byte[]> deadLetterProducer() {
+        return new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer()) {
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+    }
+
+    private SyntheticChanges changes(FraudProperties fraudProperties) {
+        return new SyntheticChanges(options, fraudProperties, Instant.ofEpochMilli(start));
+    }
+
+    private static DeadLetterPublisher deadLetterPublisher(MockProducer<byte[], byte[]> producer, UtilService utilService) {
+        return new DeadLetterPublisher(new KafkaTemplate<>(new MockProducerFactory<>(() -> producer)), utilService.mapper);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
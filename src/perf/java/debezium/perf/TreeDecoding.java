@@ -0,0 +1,74 @@
+package debezium.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The tree-based decoding of Debezium envelopes that {@link debezium.component.ChangeEventDecoder} replaced:
+ * every helper parses the whole message into a {@link JsonNode} tree again. Kept as the baseline of
+ * {@link DecodeBenchmark}.
+ */
+final class TreeDecoding {
+    private final ObjectMapper mapper;
+
+    TreeDecoding(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return The decimal scales of the row fields by field name, from the first field of the envelope's schema.
+     * @throws UncheckedIOException if the message is not valid JSON.
+     */
+    Map<String, Integer> getFieldScales(String rawJson) {
+        try {
+            JsonNode root = mapper.readTree(rawJson);
+            Map<String, Integer> fieldScaleMap = new HashMap<>();
+            JsonNode fields = root.at("/schema/fields/0/fields");
+            if (fields.isArray()) {
+                for (JsonNode field : fields) {
+                    JsonNode fieldNameNode = field.get("field");
+                    JsonNode parametersNode = field.get("parameters");
+                    if (fieldNameNode != null && parametersNode != null && parametersNode.has("scale")) {
+                        fieldScaleMap.put(fieldNameNode.asText(), parametersNode.get("scale").asInt());
+                    }
+                }
+            }
+            return fieldScaleMap;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The "before" row, or null if it is missing, null, or empty.
+     * @throws UncheckedIOException if the message is not valid JSON.
+     */
+    JsonNode beforeJson(String rawJson) {
+        return row(rawJson, "before");
+    }
+
+    /**
+     * @return The "after" row, or null if it is missing, null, or empty.
+     * @throws UncheckedIOException if the message is not valid JSON.
+     */
+    JsonNode afterJson(String rawJson) {
+        return row(rawJson, "after");
+    }
+
+    private JsonNode row(String rawJson, String name) {
+        if (rawJson == null || rawJson.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonNode row = mapper.readTree(rawJson).path("payload").path(name);
+            return row.isMissingNode() || row.isNull() || row.isEmpty() ? null : row;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}